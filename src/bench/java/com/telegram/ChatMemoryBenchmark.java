@@ -0,0 +1,96 @@
+package com.telegram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatMemory com várias threads ao mesmo tempo, como no dispatcher: cada
+ * operação escolhe um chat ao acaso entre {@code chats} conversas já cheias.
+ * Com poucos chats as threads disputam os mesmos locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChatMemoryBenchmark {
+
+    @Param({"16", "10000"})
+    private int chats;
+
+    private ChatMemory memory;
+    private ChatMessage userMessage;
+    private ChatMessage assistantMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        memory = new ChatMemory(new Config.MemoryConfig());
+        userMessage = new ChatMessage(ChatMessage.Role.USER, "Qual é a derivada de x^2 + 3x?");
+        assistantMessage = new ChatMessage(ChatMessage.Role.ASSISTANT,
+                "A derivada é 2x + 3. Derive termo a termo: x^2 vira 2x e 3x vira 3.");
+        // Históricos já no limite, para medir o caso comum (anel cheio, descartando o mais antigo)
+        for (long chatId = 0; chatId < chats; chatId++) {
+            for (int i = 0; i < 10; i++) {
+                memory.addMessage(chatId, userMessage);
+                memory.addMessage(chatId, assistantMessage);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        memory.close();
+    }
+
+    private long randomChat() {
+        return ThreadLocalRandom.current().nextInt(chats);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addMessage() {
+        memory.addMessage(randomChat(), userMessage);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<ChatMessage> getHistory() {
+        return memory.getHistory(randomChat());
+    }
+
+    // Uma troca de mensagens típica: lê o histórico e grava pergunta e resposta
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<ChatMessage> mixedRead() {
+        return memory.getHistory(randomChat());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() {
+        long chatId = randomChat();
+        memory.addMessage(chatId, userMessage);
+        memory.addMessage(chatId, assistantMessage);
+    }
+}
@@ -0,0 +1,101 @@
+package com.telegram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caminho completo de uma mensagem: {@link TelegramBot#onUpdateReceived} →
+ * dispatcher → ChatMemory → OllamaClient → TelegramSender, contra um Ollama e
+ * uma API do Telegram falsos no próprio processo (HTTP de verdade em 127.0.0.1).
+ * Cada operação usa um chat novo e espera o sendMessage chegar ao Telegram falso.
+ * Caches e streaming ficam desligados para que toda mensagem vá ao "modelo".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class EndToEndBenchmark {
+
+    private static final String TOKEN = "bench-token";
+
+    private final AtomicLong nextChatId = new AtomicLong();
+
+    private FakeOllamaServer ollama;
+    private FakeTelegramServer telegram;
+    private OllamaClient ollamaClient;
+    private TelegramBot bot;
+
+    @Setup
+    public void setUp() throws IOException {
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        ollama = new FakeOllamaServer(0, 0, 12);
+        telegram = new FakeTelegramServer(TOKEN);
+
+        Config config = new Config();
+        config.setTelegramToken(TOKEN);
+        config.setBotUsername("bench_bot");
+        Config.OllamaConfig ollamaConfig = new Config.OllamaConfig();
+        ollamaConfig.setBaseUrl(ollama.getUrl());
+        ollamaConfig.setModel("bench");
+        ollamaConfig.setMaxConcurrentRequests(16);
+        ollamaConfig.setMaxQueuedRequests(1024);
+        config.setOllama(ollamaConfig);
+        config.getCache().setEnabled(false);
+        config.getStreaming().setEnabled(false);
+        config.getMathEngine().setEnabled(false);
+        config.getTelegram().setApiUrl(telegram.getApiUrl());
+        // O limite global do Telegram mediria o TokenBucket, não o bot
+        config.getTelegram().setGlobalMessagesPerSecond(1_000_000);
+
+        ollamaClient = new OllamaClient(ollamaConfig);
+        bot = new TelegramBot(config, ollamaClient);
+    }
+
+    @TearDown
+    public void tearDown() {
+        bot.shutdown();
+        ollamaClient.shutdown();
+        ollama.close();
+        telegram.close();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String onUpdateReceived() throws Exception {
+        long chatId = nextChatId.incrementAndGet();
+        CompletableFuture<String> reply = telegram.expectReply(chatId);
+        bot.onUpdateReceived(update(chatId, "Qual é a derivada de x^2 + 3x?"));
+        return reply.get(10, TimeUnit.SECONDS);
+    }
+
+    private static Update update(long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+}
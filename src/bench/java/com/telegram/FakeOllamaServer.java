@@ -0,0 +1,135 @@
+package com.telegram;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ollama falso para benchmarks e testes de carga: responde /api/tags e /api/chat
+ * (com e sem streaming) depois de uma latência inicial, gerando {@code answerTokens}
+ * "tokens" a {@code tokensPerSecond}. Com os dois em zero responde na hora.
+ */
+public class FakeOllamaServer implements AutoCloseable {
+
+    private static final String[] WORDS = {
+            "Para ", "resolver ", "a ", "equação ", "isole ", "o ", "x ", "dos ", "dois ", "lados. "
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long firstTokenDelayMillis;
+    private final double tokensPerSecond;
+    private final int answerTokens;
+    private final LongAdder requests = new LongAdder();
+
+    public FakeOllamaServer(long firstTokenDelayMillis, double tokensPerSecond, int answerTokens) throws IOException {
+        this.firstTokenDelayMillis = firstTokenDelayMillis;
+        this.tokensPerSecond = tokensPerSecond;
+        this.answerTokens = answerTokens;
+        // Sem isso o HttpServer do JDK espera o ACK atrasado (~40ms) a cada resposta
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Uma thread por geração em andamento, como um Ollama com slots de sobra
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fake-ollama-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/api/tags", exchange -> respond(exchange, "{\"models\":[]}"));
+        server.createContext("/api/chat", this::chat);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        requests.increment();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        boolean stream = body.contains("\"stream\":true");
+        long promptTokens = body.length() / 4;
+        try (exchange) {
+            pause(firstTokenDelayMillis);
+            if (!stream) {
+                pause(generationMillis(answerTokens));
+                respond(exchange, "{\"model\":\"fake\",\"message\":{\"role\":\"assistant\",\"content\":\""
+                        + answer(answerTokens) + "\"},\"done\":true," + timings(promptTokens) + "}");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            for (int i = 0; i < answerTokens; i++) {
+                if (i > 0) {
+                    pause(generationMillis(1));
+                }
+                out.write(("{\"model\":\"fake\",\"message\":{\"role\":\"assistant\",\"content\":\""
+                        + WORDS[i % WORDS.length] + "\"},\"done\":false}\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            out.write(("{\"model\":\"fake\",\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,"
+                    + timings(promptTokens) + "}\n").getBytes(StandardCharsets.UTF_8));
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long generationMillis(int tokens) {
+        return tokensPerSecond <= 0 ? 0 : (long) (tokens * 1000 / tokensPerSecond);
+    }
+
+    private String timings(long promptTokens) {
+        long evalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, generationMillis(answerTokens)));
+        return String.format(Locale.ROOT, "\"total_duration\":%d,\"prompt_eval_count\":%d,\"prompt_eval_duration\":%d,"
+                        + "\"eval_count\":%d,\"eval_duration\":%d",
+                TimeUnit.MILLISECONDS.toNanos(firstTokenDelayMillis) + evalNanos, promptTokens,
+                TimeUnit.MILLISECONDS.toNanos(Math.max(1, firstTokenDelayMillis)), answerTokens, evalNanos);
+    }
+
+    private static String answer(int tokens) {
+        StringBuilder answer = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            answer.append(WORDS[i % WORDS.length]);
+        }
+        return answer.toString();
+    }
+
+    private static void pause(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,216 @@
+package com.telegram;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * API do Telegram falsa para benchmarks e testes de carga.
+ *
+ * Entrega updates por {@code getUpdates} (long polling de até 1s) ou, depois de um
+ * {@code setWebhook}, com POST na URL registrada (como o Telegram faz). Aceita
+ * {@code sendMessage}, {@code editMessageText} e {@code sendChatAction}; os demais
+ * métodos respondem {@code true}. A resposta do bot a um chat é considerada
+ * completa quando chega uma mensagem ou edição com {@code parse_mode}: o bot
+ * só manda Markdown no texto final (os pedaços do streaming vão sem).
+ */
+public class FakeTelegramServer implements AutoCloseable {
+
+    private static final long MAX_POLL_MILLIS = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String token;
+    private final BlockingQueue<ObjectNode> updates = new LinkedBlockingQueue<>();
+    private final Map<Long, CompletableFuture<String>> replies = new ConcurrentHashMap<>();
+    private final AtomicLong nextUpdateId = new AtomicLong();
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder edits = new LongAdder();
+    private final HttpClient webhookClient = HttpClient.newHttpClient();
+    private volatile URI webhookUrl;
+    private volatile String webhookSecret;
+
+    public FakeTelegramServer(String token) throws IOException {
+        this.token = token;
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fake-telegram-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/bot" + token + "/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Valor para 'telegram.apiUrl'. */
+    public String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getMessages() { return messages.sum(); }
+    public long getEdits()    { return edits.sum(); }
+
+    /**
+     * Entrega a mensagem ao bot (fila do getUpdates ou POST no webhook).
+     * @return future com o texto final da resposta do bot
+     */
+    public CompletableFuture<String> ask(long chatId, String text) {
+        CompletableFuture<String> reply = expectReply(chatId);
+        ObjectNode update = update(chatId, text);
+        if (webhookUrl == null) {
+            updates.add(update);
+        } else {
+            push(update, reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Registra a espera pela próxima resposta final do chat (uma por vez).
+     */
+    public CompletableFuture<String> expectReply(long chatId) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        replies.put(chatId, reply);
+        return reply;
+    }
+
+    private void push(ObjectNode update, CompletableFuture<String> reply) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(webhookUrl)
+                    .header("Content-Type", "application/json")
+                    .header("X-Telegram-Bot-Api-Secret-Token", webhookSecret)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(update)))
+                    .build();
+        } catch (IOException e) {
+            reply.completeExceptionally(e);
+            return;
+        }
+        webhookClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() != 200) {
+                reply.completeExceptionally(error != null ? error
+                        : new IOException("Webhook respondeu " + response.statusCode()));
+            }
+        });
+    }
+
+    private ObjectNode update(long chatId, String text) {
+        long updateId = nextUpdateId.incrementAndGet();
+        ObjectNode update = mapper.createObjectNode();
+        update.put("update_id", updateId);
+        ObjectNode message = update.putObject("message");
+        message.put("message_id", updateId);
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.putObject("from").put("id", chatId).put("is_bot", false).put("first_name", "Carga");
+        message.put("text", text);
+        return update;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestURI().getPath().substring(("/bot" + token + "/").length())
+                    .toLowerCase();
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] bytes = body.readAllBytes();
+                request = bytes.length == 0 ? mapper.createObjectNode() : mapper.readTree(bytes);
+            }
+            switch (method) {
+                case "getupdates":
+                    ok(exchange, poll(request));
+                    break;
+                case "sendmessage":
+                    messages.increment();
+                    ok(exchange, sent(request, nextMessageId.incrementAndGet()));
+                    break;
+                case "setwebhook":
+                    webhookSecret = request.path("secret_token").asText();
+                    webhookUrl = URI.create(request.path("url").asText());
+                    ok(exchange, mapper.getNodeFactory().booleanNode(true));
+                    break;
+                case "editmessagetext":
+                    edits.increment();
+                    ok(exchange, sent(request, request.path("message_id").asInt()));
+                    break;
+                default:
+                    ok(exchange, mapper.getNodeFactory().booleanNode(true));
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ArrayNode poll(JsonNode request) throws InterruptedException {
+        int limit = request.path("limit").asInt(100);
+        long waitMillis = Math.min(MAX_POLL_MILLIS, TimeUnit.SECONDS.toMillis(request.path("timeout").asLong(0)));
+        ArrayNode result = mapper.createArrayNode();
+        ObjectNode first = updates.poll(waitMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            result.add(first);
+            ObjectNode next;
+            while (result.size() < limit && (next = updates.poll()) != null) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    private ObjectNode sent(JsonNode request, int messageId) {
+        long chatId = request.path("chat_id").asLong();
+        String text = request.path("text").asText();
+        if (request.hasNonNull("parse_mode")) {
+            CompletableFuture<String> reply = replies.remove(chatId);
+            if (reply != null) {
+                reply.complete(text);
+            }
+        }
+        ObjectNode message = mapper.createObjectNode();
+        message.put("message_id", messageId);
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.put("text", text);
+        return message;
+    }
+
+    private void ok(HttpExchange exchange, JsonNode result) throws IOException {
+        ObjectNode response = mapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        FakeOllamaServer.respond(exchange, mapper.writeValueAsString(response));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,238 @@
+package com.telegram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Teste de carga local: sobe o bot inteiro ({@link Main#start}) apontando para um
+ * Telegram e um Ollama falsos no próprio processo e simula N chats conversando ao
+ * mesmo tempo. Cada chat manda uma pergunta, espera a resposta final, "pensa" e
+ * manda a próxima, até acabar o tempo.
+ *
+ * <pre>
+ * mvn -Pbench -DskipTests test-compile exec:exec@load-test -Dload.args="--chats 200 --duration 60"
+ * </pre>
+ *
+ * Opções (padrão entre parênteses): --chats (50), --duration segundos (30),
+ * --ramp-up segundos (5), --think-ms (1000), --timeout segundos (60),
+ * --first-token-ms (300), --tokens-per-second (40), --answer-tokens (60),
+ * --ollama-slots (4), --streaming (true), --global-rate msgs/s (30),
+ * --mode polling|webhook (polling), --chat-rate perguntas/min por chat (600; o padrão
+ * do bot recusaria os chats simulados, que perguntam mais rápido que uma pessoa),
+ * --coalesce-ms janela de coalescência (0; entra inteira na latência de cada pergunta).
+ */
+public class LoadTest {
+
+    private static final String TOKEN = "load-test";
+    private static final String[] QUESTIONS = {
+            "Explique como resolver x^2 - %dx + %d = 0",
+            "Qual a derivada de %dx^3 + %dx?",
+            "Como calcular a área de um triângulo de base %d e altura %d?",
+            "O que é um número primo? Dê exemplos até %d%d",
+    };
+
+    private final Map<String, String> options;
+    private final int chats;
+    private final long durationNanos;
+    private final long thinkMillis;
+    private final long timeoutSeconds;
+
+    // Só respostas de verdade; as de erro (❌/🚦/⏳) voltam rápido e mascarariam a latência
+    private final List<Long> latencies = new ArrayList<>();
+    private final List<Long> errorLatencies = new ArrayList<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errorReplies = new LongAdder();
+    private ScheduledExecutorService scheduler;
+    private FakeTelegramServer telegram;
+    private long deadline;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.chats = intOption("chats", 50);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(intOption("duration", 30));
+        this.thinkMillis = intOption("think-ms", 1000);
+        this.timeoutSeconds = intOption("timeout", 60);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Opção inválida: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        // Os logs por mensagem do bot atrapalhariam mais que ajudariam aqui
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        try (FakeOllamaServer ollama = new FakeOllamaServer(intOption("first-token-ms", 300),
+                doubleOption("tokens-per-second", 40), intOption("answer-tokens", 60));
+             FakeTelegramServer fakeTelegram = new FakeTelegramServer(TOKEN)) {
+            telegram = fakeTelegram;
+            Runnable stopBot = Main.start(config(ollama, fakeTelegram));
+            scheduler = Executors.newScheduledThreadPool(4, r -> {
+                Thread thread = new Thread(r, "load-test");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            long rampUpNanos = TimeUnit.SECONDS.toNanos(intOption("ramp-up", 5));
+            long start = System.nanoTime();
+            deadline = start + durationNanos;
+            System.out.printf(Locale.ROOT, "▶️ %d chats por %ds (Ollama falso: %s)%n", chats,
+                    TimeUnit.NANOSECONDS.toSeconds(durationNanos), ollama.getUrl());
+            List<CompletableFuture<Void>> users = new ArrayList<>();
+            for (int i = 0; i < chats; i++) {
+                CompletableFuture<Void> finished = new CompletableFuture<>();
+                users.add(finished);
+                long chatId = 1_000_000L + i;
+                scheduler.schedule(() -> converse(chatId, finished), rampUpNanos * i / chats, TimeUnit.NANOSECONDS);
+            }
+            CompletableFuture.allOf(users.toArray(new CompletableFuture[0])).join();
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            report(elapsedSeconds, ollama);
+            stopBot.run();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private Config config(FakeOllamaServer ollama, FakeTelegramServer telegram) {
+        Config config = new Config();
+        config.setTelegramToken(TOKEN);
+        config.setBotUsername("load_test_bot");
+        Config.OllamaConfig ollamaConfig = new Config.OllamaConfig();
+        ollamaConfig.setBaseUrl(ollama.getUrl());
+        ollamaConfig.setModel("fake");
+        ollamaConfig.setMaxConcurrentRequests(intOption("ollama-slots", 4));
+        ollamaConfig.setMaxQueuedRequests(Math.max(64, chats));
+        config.setOllama(ollamaConfig);
+        config.getTelegram().setApiUrl(telegram.getApiUrl());
+        config.getTelegram().setGlobalMessagesPerSecond(doubleOption("global-rate", 30));
+        config.getScheduler().setPerChatQuestionsPerMinute(doubleOption("chat-rate", 600));
+        config.getScheduler().setCoalesceWindowMs(intOption("coalesce-ms", 0));
+        config.getStreaming().setEnabled(Boolean.parseBoolean(options.getOrDefault("streaming", "true")));
+        if ("webhook".equals(options.get("mode"))) {
+            // O Telegram falso chama o webhook por HTTP mesmo (o de verdade exige HTTPS)
+            int port = freePort();
+            config.getTelegram().setMode("webhook");
+            config.getWebhook().setPort(port);
+            config.getWebhook().setHost("127.0.0.1");
+            config.getWebhook().setUrl("http://127.0.0.1:" + port + config.getWebhook().getPath());
+            config.getWebhook().setSecretToken("load-test-secret");
+            config.getWebhook().setThreads(16);
+        }
+        return config;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Uma pergunta do chat; a próxima é agendada quando a resposta chega.
+     */
+    private void converse(long chatId, CompletableFuture<Void> finished) {
+        if (System.nanoTime() >= deadline) {
+            finished.complete(null);
+            return;
+        }
+        sent.increment();
+        long askedAt = System.nanoTime();
+        telegram.ask(chatId, question())
+                .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .whenComplete((reply, error) -> {
+                    if (error instanceof TimeoutException) {
+                        timeouts.increment();
+                    } else if (error != null) {
+                        errorReplies.increment();
+                    } else if (reply.startsWith("❌") || reply.startsWith("🚦") || reply.startsWith("⏳")) {
+                        errorReplies.increment();
+                        synchronized (errorLatencies) {
+                            errorLatencies.add(System.nanoTime() - askedAt);
+                        }
+                    } else {
+                        synchronized (latencies) {
+                            latencies.add(System.nanoTime() - askedAt);
+                        }
+                    }
+                    long think = thinkMillis <= 0 ? 0 : ThreadLocalRandom.current().nextLong(thinkMillis / 2, thinkMillis * 3 / 2 + 1);
+                    scheduler.schedule(() -> converse(chatId, finished), think, TimeUnit.MILLISECONDS);
+                });
+    }
+
+    private static String question() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(Locale.ROOT, QUESTIONS[random.nextInt(QUESTIONS.length)],
+                random.nextInt(2, 50), random.nextInt(2, 50));
+    }
+
+    private void report(double elapsedSeconds, FakeOllamaServer ollama) {
+        long[] sorted = sorted(latencies);
+        long[] errors = sorted(errorLatencies);
+        long questions = sent.sum();
+        long failed = timeouts.sum() + errorReplies.sum();
+        System.out.println();
+        System.out.println("📊 Resultado do teste de carga");
+        System.out.printf(Locale.ROOT, "  chats simultâneos   %d%n", chats);
+        System.out.printf(Locale.ROOT, "  perguntas enviadas  %d%n", questions);
+        System.out.printf(Locale.ROOT, "  respostas ok        %d (%.1f/s)%n", sorted.length, sorted.length / elapsedSeconds);
+        System.out.printf(Locale.ROOT, "  latência p50        %.0f ms%n", percentile(sorted, 0.50));
+        System.out.printf(Locale.ROOT, "  latência p90        %.0f ms%n", percentile(sorted, 0.90));
+        System.out.printf(Locale.ROOT, "  latência p99        %.0f ms%n", percentile(sorted, 0.99));
+        System.out.printf(Locale.ROOT, "  latência máx        %.0f ms%n", percentile(sorted, 1.0));
+        System.out.printf(Locale.ROOT, "  timeouts            %d%n", timeouts.sum());
+        System.out.printf(Locale.ROOT, "  respostas de erro   %d%n", errorReplies.sum());
+        if (errors.length > 0) {
+            System.out.printf(Locale.ROOT, "  latência erro p50   %.0f ms (p99 %.0f ms)%n",
+                    percentile(errors, 0.50), percentile(errors, 0.99));
+        }
+        System.out.printf(Locale.ROOT, "  taxa de erro        %.2f%%%n", questions == 0 ? 0 : 100.0 * failed / questions);
+        System.out.printf(Locale.ROOT, "  chamadas ao Ollama  %d, Telegram: %d mensagens, %d edições%n",
+                ollama.getRequests(), telegram.getMessages(), telegram.getEdits());
+    }
+
+    private static long[] sorted(List<Long> values) {
+        synchronized (values) {
+            return values.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,158 @@
+package com.telegram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Montagem do corpo do /api/chat e leitura da resposta, os dois lados do
+ * {@link OllamaClient} que rodam a cada mensagem. Rode com {@code -prof gc}
+ * para ver também a alocação por operação.
+ *
+ * Os métodos terminados em {@code Tree} refazem o caminho antigo, com
+ * {@link ObjectNode}/{@link ArrayNode} na ida e {@code String} + {@code readTree}
+ * na volta, sobre as mesmas entradas, para comparar lado a lado no jmh-result.json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OllamaCodecBenchmark {
+
+    // Mensagens de histórico enviadas junto com a pergunta
+    @Param({"0", "20"})
+    private int historySize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private String systemPrompt;
+    private OllamaCodec codec;
+    private List<ChatMessage> history;
+    private ByteArrayOutputStream out;
+    private ByteBuffer response;
+    private ByteBuffer streamedResponse;
+
+    @Setup
+    public void setUp() {
+        systemPrompt = "Você é um Tutor de Matemática Inteligente para o Telegram. Responda em PT-BR\n"
+                + "Sem LaTeX\nSeja conciso e direto nas respostas, sem dar muitos outros contextos.";
+        codec = new OllamaCodec(systemPrompt);
+        history = new ArrayList<>();
+        for (int i = 0; i < historySize / 2; i++) {
+            history.add(new ChatMessage(ChatMessage.Role.USER, "Quanto é a integral de x^" + i + " de 0 a 1?"));
+            history.add(new ChatMessage(ChatMessage.Role.ASSISTANT,
+                    "A integral de x^" + i + " é x^" + (i + 1) + "/" + (i + 1) + "; de 0 a 1 dá 1/" + (i + 1) + "."));
+        }
+        out = new ByteArrayOutputStream(8192);
+
+        String answer = "A derivada de x² + 3x é 2x + 3. Derive cada termo: x² vira 2x e 3x vira 3.";
+        response = utf8("{\"model\":\"qwen3:0.6b\",\"message\":{\"role\":\"assistant\",\"content\":\""
+                + answer + "\"},\"done\":true," + timings() + "}");
+
+        // Streaming: uma linha NDJSON por token, como o Ollama manda
+        StringBuilder ndjson = new StringBuilder();
+        for (String piece : answer.split("(?<= )")) {
+            ndjson.append("{\"model\":\"qwen3:0.6b\",\"message\":{\"role\":\"assistant\",\"content\":\"")
+                    .append(piece).append("\"},\"done\":false}\n");
+        }
+        ndjson.append("{\"model\":\"qwen3:0.6b\",\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,")
+                .append(timings()).append("}\n");
+        streamedResponse = utf8(ndjson.toString());
+    }
+
+    private static String timings() {
+        return "\"total_duration\":912000000,\"load_duration\":12000000,\"prompt_eval_count\":48,"
+                + "\"prompt_eval_duration\":100000000,\"eval_count\":31,\"eval_duration\":800000000";
+    }
+
+    private static ByteBuffer utf8(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public int writeRequest() throws IOException {
+        out.reset();
+        codec.writeChat(out, "qwen3:0.6b", history, "E a derivada de x^3?", false);
+        return out.size();
+    }
+
+    @Benchmark
+    public long buildRequestBody() {
+        return codec.chatBody("qwen3:0.6b", history, "E a derivada de x^3?", false).contentLength();
+    }
+
+    @Benchmark
+    public long buildRequestBodyTree() throws IOException {
+        ArrayNode messages = mapper.createArrayNode();
+        messages.addObject().put("role", "system").put("content", systemPrompt);
+        for (ChatMessage message : history) {
+            messages.addObject().put("role", message.role().wireName()).put("content", message.content());
+        }
+        messages.addObject().put("role", "user").put("content", "E a derivada de x^3?");
+        ObjectNode request = mapper.createObjectNode();
+        request.put("model", "qwen3:0.6b");
+        request.set("messages", messages);
+        request.put("stream", false);
+        return HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(request)).contentLength();
+    }
+
+    @Benchmark
+    public String parseResponse() throws IOException {
+        return decode(response, null);
+    }
+
+    @Benchmark
+    public String parseStreamedResponse() throws IOException {
+        return decode(streamedResponse, partial -> { });
+    }
+
+    @Benchmark
+    public String parseResponseTree() throws IOException {
+        // BodyHandlers.ofString() decodificava o corpo inteiro antes do readTree
+        String body = StandardCharsets.UTF_8.decode(response.duplicate()).toString();
+        return mapper.readTree(body).get("message").get("content").asText();
+    }
+
+    @Benchmark
+    public String parseStreamedResponseTree() throws IOException {
+        // Uma String por linha, como o fromLineSubscriber entregava
+        StringBuilder answer = new StringBuilder();
+        for (String line : StandardCharsets.UTF_8.decode(streamedResponse.duplicate()).toString().split("\n")) {
+            JsonNode chunk = mapper.readTree(line);
+            answer.append(chunk.path("message").path("content").asText(""));
+            if (chunk.path("done").asBoolean(false)) {
+                break;
+            }
+        }
+        return answer.toString();
+    }
+
+    private String decode(ByteBuffer body, Consumer<String> onPartial) throws IOException {
+        OllamaCodec.ChatDecoder decoder = codec.newDecoder(onPartial);
+        decoder.feed(body.duplicate());
+        decoder.onComplete();
+        return decoder.result().join().getContent();
+    }
+}
@@ -0,0 +1,484 @@
+package com.telegram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Log de eventos do {@link ChatMemory} em disco, para o histórico sobreviver a reinícios.
+ *
+ * Cada {@code addMessage}/{@code clearHistory}/resumo vira um evento numa fila; uma thread
+ * grava os eventos em lote em segmentos mapeados em memória ({@code segment-N.log})
+ * e faz um único {@code force()} por lote (group commit), então quem responde ao
+ * usuário nunca espera o disco. De tempos em tempos o estado inteiro vai para um
+ * snapshot ({@code snapshot-N.snap}) e os segmentos anteriores a N são apagados.
+ *
+ * Na subida, o último snapshot é carregado e só os segmentos a partir dele são
+ * reaplicados. Cada evento tem um número de sequência; o snapshot guarda o último
+ * aplicado em cada chat, e eventos com número menor ou igual são ignorados.
+ */
+public class ChatJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatJournal.class.getName());
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.snap");
+    private static final int SNAPSHOT_MAGIC = 0x43484D53; // "CHMS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    static final byte ADD = 1;
+    static final byte CLEAR = 2;
+    static final byte SUMMARY = 3;
+
+    // length (int) + crc (int)
+    private static final int RECORD_HEADER = 8;
+    // tipo (byte) + seq (long) + chatId (long)
+    private static final int EVENT_HEADER = 17;
+
+    /**
+     * Recebe os eventos lidos do disco na subida.
+     */
+    public interface Replay {
+        void add(long chatId, long seq, ChatMessage message);
+        void clear(long chatId, long seq);
+        void summarize(long chatId, long seq, int replaced, ChatMessage summary);
+    }
+
+    /**
+     * Um chat no snapshot: último número de sequência aplicado e as mensagens.
+     */
+    public interface ChatVisitor {
+        void visit(long chatId, long lastSeq, List<ChatMessage> messages) throws IOException;
+    }
+
+    /**
+     * Fonte do estado a gravar no snapshot (o próprio {@link ChatMemory}).
+     */
+    public interface State {
+        void forEachChat(ChatVisitor visitor) throws IOException;
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long snapshotIntervalNanos;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LinkedBlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+
+    private State state;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean failed;
+
+    // Só a thread de escrita mexe nestes campos depois do start()
+    private long segmentIndex;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long eventsSinceSnapshot;
+    private long lastSnapshotNanos = System.nanoTime();
+    private final CRC32 crc = new CRC32();
+
+    public ChatJournal(Path directory, int segmentSize, long snapshotIntervalSeconds) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.snapshotIntervalNanos = TimeUnit.SECONDS.toNanos(snapshotIntervalSeconds);
+    }
+
+    /**
+     * Carrega o último snapshot e reaplica os segmentos seguintes.
+     */
+    public void recover(Replay replay) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+
+        long snapshotIndex = latestIndex(SNAPSHOT_FILE);
+        Map<Long, Long> appliedSeqs = new HashMap<>();
+        long events = 0;
+        if (snapshotIndex >= 0) {
+            events += readSnapshot(snapshotFile(snapshotIndex), replay, appliedSeqs);
+        }
+
+        long lastSegment = -1;
+        for (long index : indexes(SEGMENT_FILE)) {
+            if (index < snapshotIndex) {
+                continue;
+            }
+            events += replaySegment(segmentFile(index), replay, appliedSeqs);
+            lastSegment = index;
+        }
+
+        // Nunca reescreve um segmento existente: o próximo começa depois do último
+        segmentIndex = Math.max(lastSegment + 1, Math.max(snapshotIndex, 0));
+        LOGGER.info("📂 ChatJournal recovered " + events + " events from " + directory + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    /**
+     * Abre um segmento novo e começa a thread de escrita.
+     */
+    public void start(State state) throws IOException {
+        this.state = state;
+        openSegment(segmentIndex, segmentSize);
+        running = true;
+        writer = new Thread(this::runWriter, "chat-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Registra uma mensagem nova. Deve ser chamado com o lock do chat. */
+    public long appendAdd(long chatId, ChatMessage message) {
+        long seq = sequence.incrementAndGet();
+        if (running) {
+            queue.add(new Event(ADD, seq, chatId, message, 0));
+        }
+        return seq;
+    }
+
+    /** Registra a limpeza do chat. Deve ser chamado com o lock do chat. */
+    public long appendClear(long chatId) {
+        long seq = sequence.incrementAndGet();
+        if (running) {
+            queue.add(new Event(CLEAR, seq, chatId, null, 0));
+        }
+        return seq;
+    }
+
+    /** Registra a troca das {@code replaced} mensagens mais antigas por um resumo. Deve ser chamado com o lock do chat. */
+    public long appendSummary(long chatId, int replaced, ChatMessage summary) {
+        long seq = sequence.incrementAndGet();
+        if (running) {
+            queue.add(new Event(SUMMARY, seq, chatId, summary, replaced));
+        }
+        return seq;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    /** {@code true} se a thread de escrita parou com erro: as mudanças seguintes não vão mais para o disco. */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Grava o que está na fila, faz um último snapshot e fecha o segmento.
+     */
+    public void close() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Event> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (eventsSinceSnapshot > 0 && snapshotIntervalNanos > 0
+                        && System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos) {
+                    snapshot();
+                }
+            }
+            if (eventsSinceSnapshot > 0) {
+                snapshot();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "❌ ChatJournal writer stopped, history is no longer persisted", e);
+            failed = true;
+            running = false;
+            queue.clear();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void writeBatch(List<Event> batch) throws IOException {
+        for (Event event : batch) {
+            byte[] content = event.message == null ? null : event.message.content().getBytes(StandardCharsets.UTF_8);
+            int payload = EVENT_HEADER + (content == null ? 0 : 1 + content.length) + (event.type == SUMMARY ? 4 : 0);
+            // Sempre sobram 4 bytes zerados no fim: marcam onde o segmento termina
+            if (segment.remaining() < RECORD_HEADER + payload + 4) {
+                rollSegment(RECORD_HEADER + payload + 4);
+            }
+            int start = segment.position();
+            segment.position(start + RECORD_HEADER);
+            segment.put(event.type);
+            segment.putLong(event.seq);
+            segment.putLong(event.chatId);
+            if (event.type == SUMMARY) {
+                segment.putInt(event.count);
+            }
+            if (content != null) {
+                segment.put((byte) event.message.role().ordinal());
+                segment.put(content);
+            }
+            crc.reset();
+            crc.update(segment.duplicate().position(start + RECORD_HEADER).limit(start + RECORD_HEADER + payload));
+            segment.putInt(start + 4, (int) crc.getValue());
+            // O tamanho por último: um registro pela metade continua parecendo fim de segmento
+            segment.putInt(start, payload);
+        }
+        // Um único flush por lote
+        segment.force();
+        eventsSinceSnapshot += batch.size();
+    }
+
+    /**
+     * Fecha o segmento atual, abre o próximo e grava um snapshot que cobre tudo
+     * antes dele; depois apaga o que ficou para trás.
+     */
+    private void snapshot() throws IOException {
+        long start = System.nanoTime();
+        rollSegment(segmentSize);
+        long index = segmentIndex;
+        Path target = snapshotFile(index);
+        Path tmp = directory.resolve(target.getFileName() + ".tmp");
+
+        long[] counts = new long[2];
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(sequence.get());
+            state.forEachChat((chatId, lastSeq, messages) -> {
+                out.writeBoolean(true);
+                out.writeLong(chatId);
+                out.writeLong(lastSeq);
+                out.writeInt(messages.size());
+                for (ChatMessage message : messages) {
+                    byte[] content = message.content().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(message.role().ordinal());
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+                counts[0]++;
+                counts[1] += messages.size();
+            });
+            out.writeBoolean(false);
+            out.flush();
+            file.flush();
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        eventsSinceSnapshot = 0;
+        lastSnapshotNanos = System.nanoTime();
+        compact(index);
+        LOGGER.info("💾 ChatJournal snapshot: " + counts[0] + " chats, " + counts[1] + " messages in "
+                + TimeUnit.NANOSECONDS.toMillis(lastSnapshotNanos - start) + "ms");
+    }
+
+    /**
+     * Apaga segmentos e snapshots já cobertos pelo snapshot {@code index}.
+     */
+    private void compact(long index) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                long segment = parseIndex(SEGMENT_FILE, file);
+                long snapshot = parseIndex(SNAPSHOT_FILE, file);
+                if ((segment >= 0 && segment < index) || (snapshot >= 0 && snapshot < index)) {
+                    try {
+                        Files.delete(file);
+                    } catch (IOException e) {
+                        // Ex.: no Windows um arquivo ainda mapeado não pode ser apagado; tenta no próximo snapshot
+                        LOGGER.fine("Could not delete " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "ChatJournal compaction failed", e);
+        }
+    }
+
+    private void rollSegment(int minSize) throws IOException {
+        closeSegment();
+        openSegment(segmentIndex + 1, Math.max(segmentSize, minSize));
+    }
+
+    private void openSegment(long index, int size) throws IOException {
+        segmentIndex = index;
+        segmentChannel = FileChannel.open(segmentFile(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force();
+            segmentChannel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close journal segment " + segmentIndex, e);
+        }
+        segment = null;
+    }
+
+    private long readSnapshot(Path file, Replay replay, Map<Long, Long> appliedSeqs) throws IOException {
+        long messages = 0;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Snapshot inválido: " + file);
+            }
+            sequence.set(Math.max(sequence.get(), in.readLong()));
+            ChatMessage.Role[] roles = ChatMessage.Role.values();
+            while (in.readBoolean()) {
+                long chatId = in.readLong();
+                long lastSeq = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    ChatMessage.Role role = roles[in.readByte()];
+                    byte[] content = new byte[in.readInt()];
+                    in.readFully(content);
+                    replay.add(chatId, lastSeq, new ChatMessage(role, new String(content, StandardCharsets.UTF_8)));
+                }
+                appliedSeqs.put(chatId, lastSeq);
+                messages += count;
+            }
+        } catch (EOFException e) {
+            LOGGER.warning("Truncated snapshot " + file + ", loaded what was readable");
+        }
+        return messages;
+    }
+
+    private long replaySegment(Path file, Replay replay, Map<Long, Long> appliedSeqs) throws IOException {
+        long events = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ChatMessage.Role[] roles = ChatMessage.Role.values();
+            while (buffer.remaining() >= RECORD_HEADER) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < EVENT_HEADER || length > buffer.remaining()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.duplicate().limit(start + RECORD_HEADER + length));
+                if ((int) crc.getValue() != checksum) {
+                    // Escrita interrompida no meio: o resto do segmento é descartado
+                    LOGGER.warning("Corrupt record in " + file + " at " + start + ", ignoring the rest of the segment");
+                    break;
+                }
+                byte type = buffer.get();
+                long seq = buffer.getLong();
+                long chatId = buffer.getLong();
+                sequence.set(Math.max(sequence.get(), seq));
+                boolean applied = seq <= appliedSeqs.getOrDefault(chatId, 0L);
+                if (type == ADD) {
+                    ChatMessage.Role role = roles[buffer.get()];
+                    byte[] content = new byte[length - EVENT_HEADER - 1];
+                    buffer.get(content);
+                    if (!applied) {
+                        replay.add(chatId, seq, new ChatMessage(role, new String(content, StandardCharsets.UTF_8)));
+                    }
+                } else if (type == CLEAR && !applied) {
+                    replay.clear(chatId, seq);
+                } else if (type == SUMMARY) {
+                    int replaced = buffer.getInt();
+                    ChatMessage.Role role = roles[buffer.get()];
+                    byte[] content = new byte[length - EVENT_HEADER - 5];
+                    buffer.get(content);
+                    if (!applied) {
+                        replay.summarize(chatId, seq, replaced, new ChatMessage(role, new String(content, StandardCharsets.UTF_8)));
+                    }
+                }
+                buffer.position(start + RECORD_HEADER + length);
+                events++;
+            }
+        }
+        return events;
+    }
+
+    private long latestIndex(Pattern pattern) throws IOException {
+        List<Long> all = indexes(pattern);
+        return all.isEmpty() ? -1 : all.get(all.size() - 1);
+    }
+
+    private List<Long> indexes(Pattern pattern) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                long index = parseIndex(pattern, file);
+                if (index >= 0) {
+                    result.add(index);
+                }
+            });
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private static long parseIndex(Pattern pattern, Path file) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve(String.format("segment-%012d.log", index));
+    }
+
+    private Path snapshotFile(long index) {
+        return directory.resolve(String.format("snapshot-%012d.snap", index));
+    }
+
+    private static final class Event {
+        final byte type;
+        final long seq;
+        final long chatId;
+        final ChatMessage message;
+        final int count;
+
+        Event(byte type, long seq, long chatId, ChatMessage message, int count) {
+            this.type = type;
+            this.seq = seq;
+            this.chatId = chatId;
+            this.message = message;
+            this.count = count;
+        }
+    }
+}
@@ -1,64 +1,149 @@
 package com.telegram;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections; // Importação adicionada
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Histórico das conversas, um buffer circular por chat.
+ *
+ * Cada chat guarda no máximo {@code maxMessages} mensagens e {@code maxHistoryTokens}
+ * tokens estimados: ao passar do limite, as mensagens mais antigas saem. Chats parados
+ * há mais de {@code idleTtlMinutes} são descartados, e se a soma de todos os chats
+ * passar de {@code maxTotalTokens}, os chats usados há mais tempo saem primeiro.
+ *
+ * Com {@code persistent} ligado, toda mudança também vai para um {@link ChatJournal}
+ * e o histórico é restaurado na próxima subida.
+ */
 public class ChatMemory {
-    
+
     private static final Logger LOGGER = Logger.getLogger(ChatMemory.class.getName());
-    // Define o limite máximo de mensagens no histórico (5 pares user/assistant)
-    private static final int MAX_HISTORY_SIZE = 10; 
-    
-    // Usa ConcurrentHashMap para ser thread-safe
-    private final Map<Long, List<Map<String, String>>> conversations;
+
+    private final int maxMessages;
+    private final int maxHistoryTokens;
+    private final long idleTtlMillis;
+    private final long maxTotalTokens;
+
+    // Usa ConcurrentHashMap para ser thread-safe; cada conversa tem seu próprio lock
+    private final Map<Long, Conversation> conversations = new ConcurrentHashMap<>();
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+    private final ScheduledExecutorService sweeper;
+    private final ChatJournal journal;
 
     public ChatMemory() {
-        this.conversations = new ConcurrentHashMap<>();
-        LOGGER.info("✅ ChatMemory initialized");
+        this(new Config.MemoryConfig());
+    }
+
+    public ChatMemory(Config.MemoryConfig config) {
+        this.maxMessages = config.getMaxMessages();
+        this.maxHistoryTokens = config.getMaxHistoryTokens();
+        this.idleTtlMillis = TimeUnit.MINUTES.toMillis(config.getIdleTtlMinutes());
+        this.maxTotalTokens = config.getMaxTotalTokens();
+        this.journal = config.isPersistent() ? openJournal(config) : null;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-memory-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getSweepIntervalSeconds());
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.SECONDS);
+        LOGGER.info("✅ ChatMemory initialized - maxMessages: " + maxMessages + ", maxHistoryTokens: "
+                + maxHistoryTokens + ", idleTtl: " + config.getIdleTtlMinutes() + "min, maxTotalTokens: " + maxTotalTokens
+                + (journal != null ? ", persisted in " + config.getDirectory() : ""));
+    }
+
+    /**
+     * Restaura o histórico salvo e começa a gravar as mudanças.
+     */
+    private ChatJournal openJournal(Config.MemoryConfig config) {
+        ChatJournal opened = new ChatJournal(Path.of(config.getDirectory()),
+                config.getSegmentSizeMb() * 1024 * 1024, config.getSnapshotIntervalSeconds());
+        try {
+            opened.recover(new ChatJournal.Replay() {
+                @Override
+                public void add(long chatId, long seq, ChatMessage message) {
+                    conversations.computeIfAbsent(chatId, k -> new Conversation(chatId, maxMessages))
+                            .restore(message, seq);
+                }
+
+                @Override
+                public void clear(long chatId, long seq) {
+                    Conversation conversation = conversations.remove(chatId);
+                    if (conversation != null) {
+                        conversation.discard(false);
+                    }
+                }
+
+                @Override
+                public void summarize(long chatId, long seq, int replaced, ChatMessage summary) {
+                    Conversation conversation = conversations.get(chatId);
+                    if (conversation != null) {
+                        conversation.restoreSummary(replaced, summary, seq);
+                    }
+                }
+            });
+            opened.start(this::forEachChat);
+        } catch (IOException e) {
+            throw new IllegalStateException("❌ Não foi possível abrir o histórico em '" + config.getDirectory() + "': "
+                    + e.getMessage(), e);
+        }
+        LOGGER.info("📂 ChatMemory restored " + conversations.size() + " chats");
+        return opened;
     }
 
     /**
-     * Retorna o histórico de mensagens para um chatId específico.
-     * Retorna uma lista vazia e imutável se não houver histórico,
-     * para evitar NullPointerExceptions ou modificações indesejadas.
+     * Retorna uma cópia do histórico do chat, da mais antiga para a mais recente.
+     * Retorna uma lista vazia e imutável se não houver histórico. A cópia não muda
+     * quando novas mensagens chegam, então pode ser usada para montar a requisição.
      * @param chatId O ID do chat.
-     * @return Lista de mensagens (Map com "role" e "content").
+     * @return Lista imutável de mensagens.
      */
-    public List<Map<String, String>> getHistory(Long chatId) {
-        // Usa getOrDefault para retornar uma lista vazia se o chat não existir,
-        // garantindo que o OllamaClient receba algo válido.
-        return conversations.getOrDefault(chatId, Collections.emptyList());
+    public List<ChatMessage> getHistory(Long chatId) {
+        Conversation conversation = conversations.get(chatId);
+        return conversation == null ? Collections.emptyList() : conversation.snapshot();
     }
 
     /**
-     * Adiciona uma nova mensagem ao histórico do chat e aplica o limite de tamanho.
+     * Adiciona uma nova mensagem ao histórico do chat e aplica os limites de tamanho.
      * @param chatId O ID do chat.
      * @param role O papel na conversa ("user" ou "assistant").
      * @param content O conteúdo da mensagem.
      */
     public void addMessage(Long chatId, String role, String content) {
-        // Usa computeIfAbsent para obter a lista ou criar uma nova se não existir,
-        // garantindo thread-safety. (Um ArrayList normal já funciona bem com ConcurrentHashMap).
-        List<Map<String, String>> history = conversations.computeIfAbsent(
-            chatId, 
-            k -> new ArrayList<>()
-        );
-        
-        Map<String, String> message = new HashMap<>();
-        message.put("role", role);
-        message.put("content", content);
-        
-        history.add(message);
-        
-        // Mantém o histórico com um tamanho máximo, removendo mensagens mais antigas (FIFO).
-        if (history.size() > MAX_HISTORY_SIZE) {
-            // Remove a mensagem mais antiga (índice 0)
-            history.remove(0);
+        addMessage(chatId, new ChatMessage(ChatMessage.Role.of(role), content));
+    }
+
+    public void addMessage(Long chatId, ChatMessage message) {
+        while (true) {
+            Conversation conversation = conversations.computeIfAbsent(chatId, k -> new Conversation(chatId, maxMessages));
+            // Se a conversa foi descartada entre o get e o lock, tenta de novo até ela sair do mapa
+            if (conversation.append(message)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        if (maxTotalTokens > 0 && totalTokens.get() > maxTotalTokens && sweepPending.compareAndSet(false, true)) {
+            // A limpeza ordena os chats: roda fora da thread que está respondendo
+            try {
+                sweeper.execute(this::sweep);
+            } catch (Exception e) {
+                sweepPending.set(false);
+            }
         }
     }
 
@@ -67,7 +152,278 @@ public class ChatMemory {
      * @param chatId O ID do chat.
      */
     public void clearHistory(Long chatId) {
-        conversations.remove(chatId);
+        Conversation conversation = conversations.get(chatId);
+        if (conversation != null && conversation.discard(true)) {
+            conversations.remove(chatId, conversation);
+        }
         LOGGER.info("🧹 Cleared history for chat: " + chatId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tokens estimados do histórico atual de um chat.
+     */
+    public int getHistoryTokens(Long chatId) {
+        Conversation conversation = conversations.get(chatId);
+        return conversation == null ? 0 : conversation.tokens();
+    }
+
+    /**
+     * Trecho mais antigo de um chat, separado para ser resumido fora do lock.
+     */
+    public final class Compaction {
+        private final Conversation conversation;
+        private final long dropped;
+        private final List<ChatMessage> messages;
+
+        private Compaction(Conversation conversation, long dropped, List<ChatMessage> messages) {
+            this.conversation = conversation;
+            this.dropped = dropped;
+            this.messages = messages;
+        }
+
+        public List<ChatMessage> getMessages() { return messages; }
+    }
+
+    /**
+     * Separa as mensagens mais antigas do chat, deixando as {@code keepRecent} últimas de fora.
+     * @return o trecho, ou null se não houver pelo menos duas mensagens para resumir.
+     */
+    public Compaction beginCompaction(Long chatId, int keepRecent) {
+        Conversation conversation = conversations.get(chatId);
+        return conversation == null ? null : conversation.beginCompaction(keepRecent);
+    }
+
+    /**
+     * Troca o trecho por uma única mensagem de resumo. Não faz nada (e retorna false)
+     * se o começo do chat mudou enquanto o resumo era gerado (limpo, cortado pelo limite etc.).
+     */
+    public boolean completeCompaction(Compaction compaction, ChatMessage summary) {
+        return compaction.conversation.completeCompaction(compaction, summary);
+    }
+
+    public int getChatCount()     { return conversations.size(); }
+    public long getTotalTokens()  { return totalTokens.get(); }
+    public long getEvictions()    { return evictions.sum(); }
+    public boolean isJournalFailed() { return journal != null && journal.isFailed(); }
+
+    /**
+     * Para a limpeza periódica e, se persistente, grava o que falta no disco.
+     */
+    public void close() {
+        sweeper.shutdownNow();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Percorre os chats para o snapshot do {@link ChatJournal}.
+     */
+    void forEachChat(ChatJournal.ChatVisitor visitor) throws IOException {
+        for (Conversation conversation : conversations.values()) {
+            conversation.visit(visitor);
+        }
+    }
+
+    /**
+     * Descarta chats parados há mais que o TTL e, se a memória total ainda passar
+     * do limite, os chats usados há mais tempo.
+     */
+    void sweep() {
+        sweepPending.set(false);
+        try {
+            long now = System.currentTimeMillis();
+            int evicted = 0;
+            if (idleTtlMillis > 0) {
+                for (Map.Entry<Long, Conversation> entry : conversations.entrySet()) {
+                    if (now - entry.getValue().lastAccess > idleTtlMillis && evict(entry.getKey(), entry.getValue())) {
+                        evicted++;
+                    }
+                }
+            }
+            if (maxTotalTokens > 0 && totalTokens.get() > maxTotalTokens) {
+                List<Map.Entry<Long, Conversation>> byAge = new ArrayList<>(conversations.entrySet());
+                byAge.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+                for (Map.Entry<Long, Conversation> entry : byAge) {
+                    if (totalTokens.get() <= maxTotalTokens) {
+                        break;
+                    }
+                    if (evict(entry.getKey(), entry.getValue())) {
+                        evicted++;
+                    }
+                }
+            }
+            if (evicted > 0) {
+                LOGGER.info("♻️ ChatMemory evicted " + evicted + " chats - " + conversations.size()
+                        + " chats, ~" + totalTokens.get() + " tokens");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "ChatMemory sweep failed", e);
+        }
+    }
+
+    private boolean evict(Long chatId, Conversation conversation) {
+        // Descarta antes de tirar do mapa: assim a limpeza entra no journal antes de qualquer mensagem nova do chat
+        if (conversation.discard(true)) {
+            conversations.remove(chatId, conversation);
+            evictions.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Buffer circular de mensagens de um chat. O total de tokens de todos os chats
+     * é mantido em {@link #totalTokens}.
+     */
+    private final class Conversation {
+        private final long chatId;
+        private final ChatMessage[] ring;
+        private int head;
+        private int size;
+        private int tokens;
+        private long lastSeq;
+        // Quantas mensagens já saíram do começo; muda sempre que o início do buffer muda
+        private long dropped;
+        private boolean discarded;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        Conversation(long chatId, int capacity) {
+            this.chatId = chatId;
+            this.ring = new ChatMessage[capacity];
+        }
+
+        /**
+         * @return false se a conversa já foi descartada (o chamador cria outra).
+         */
+        synchronized boolean append(ChatMessage message) {
+            if (discarded) {
+                return false;
+            }
+            if (journal != null) {
+                lastSeq = journal.appendAdd(chatId, message);
+            }
+            push(message);
+            return true;
+        }
+
+        /** Mensagem vinda do disco: entra no buffer sem voltar para o journal. */
+        synchronized void restore(ChatMessage message, long seq) {
+            lastSeq = seq;
+            push(message);
+        }
+
+        private void push(ChatMessage message) {
+            if (size == ring.length) {
+                dropOldest();
+            }
+            ring[(head + size) % ring.length] = message;
+            size++;
+            int added = message.estimatedTokens();
+            tokens += added;
+            totalTokens.addAndGet(added);
+            // Sempre mantém a mensagem mais recente, mesmo que sozinha passe do orçamento
+            while (size > 1 && tokens > maxHistoryTokens) {
+                dropOldest();
+            }
+            lastAccess = System.currentTimeMillis();
+        }
+
+        synchronized List<ChatMessage> snapshot() {
+            lastAccess = System.currentTimeMillis();
+            return copy();
+        }
+
+        synchronized int tokens() {
+            return tokens;
+        }
+
+        synchronized Compaction beginCompaction(int keepRecent) {
+            int count = size - keepRecent;
+            if (discarded || count < 2) {
+                return null;
+            }
+            return new Compaction(this, dropped, copy().subList(0, count));
+        }
+
+        synchronized boolean completeCompaction(Compaction compaction, ChatMessage summary) {
+            if (discarded || dropped != compaction.dropped || size < compaction.messages.size()) {
+                return false;
+            }
+            if (journal != null) {
+                lastSeq = journal.appendSummary(chatId, compaction.messages.size(), summary);
+            }
+            replaceOldest(compaction.messages.size(), summary);
+            return true;
+        }
+
+        /** Resumo vindo do disco. */
+        synchronized void restoreSummary(int replaced, ChatMessage summary, long seq) {
+            lastSeq = seq;
+            replaceOldest(Math.min(replaced, size), summary);
+        }
+
+        private void replaceOldest(int count, ChatMessage summary) {
+            for (int i = 0; i < count; i++) {
+                dropOldest();
+            }
+            if (size == ring.length) {
+                dropOldest();
+            }
+            head = (head - 1 + ring.length) % ring.length;
+            ring[head] = summary;
+            size++;
+            dropped--;
+            int added = summary.estimatedTokens();
+            tokens += added;
+            totalTokens.addAndGet(added);
+        }
+
+        private List<ChatMessage> copy() {
+            ChatMessage[] copy = new ChatMessage[size];
+            for (int i = 0; i < size; i++) {
+                copy[i] = ring[(head + i) % ring.length];
+            }
+            return List.of(copy);
+        }
+
+        /**
+         * @return false se já tinha sido descartada.
+         */
+        synchronized boolean discard(boolean journaled) {
+            if (discarded) {
+                return false;
+            }
+            discarded = true;
+            totalTokens.addAndGet(-tokens);
+            if (journaled && journal != null) {
+                journal.appendClear(chatId);
+            }
+            return true;
+        }
+
+        void visit(ChatJournal.ChatVisitor visitor) throws IOException {
+            List<ChatMessage> messages;
+            long seq;
+            synchronized (this) {
+                if (discarded || size == 0) {
+                    return;
+                }
+                messages = copy();
+                seq = lastSeq;
+            }
+            visitor.visit(chatId, seq, messages);
+        }
+
+        private void dropOldest() {
+            ChatMessage oldest = ring[head];
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            dropped++;
+            int removed = oldest.estimatedTokens();
+            tokens -= removed;
+            totalTokens.addAndGet(-removed);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.telegram;
+
+import java.util.Locale;
+
+/**
+ * Uma mensagem do histórico: papel + conteúdo, imutável.
+ */
+public record ChatMessage(Role role, String content) {
+
+    public enum Role {
+        SYSTEM("system"),
+        USER("user"),
+        ASSISTANT("assistant");
+
+        private final String wireName;
+
+        Role(String wireName) {
+            this.wireName = wireName;
+        }
+
+        /**
+         * Nome usado na API do Ollama ("system", "user", "assistant").
+         */
+        public String wireName() {
+            return wireName;
+        }
+
+        public static Role of(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public ChatMessage {
+        if (role == null || content == null) {
+            throw new IllegalArgumentException("role e content são obrigatórios");
+        }
+    }
+
+    /**
+     * Estimativa barata de tokens (~4 caracteres por token), usada nos limites de memória.
+     */
+    public int estimatedTokens() {
+        return content.length() / 4 + 1;
+    }
+}
@@ -0,0 +1,310 @@
+package com.telegram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Decide, na chegada de cada mensagem, se ela vira uma nova pergunta ao modelo.
+ *
+ * Cada chat tem um {@link TokenBucket} ({@code perChatQuestionsPerMinute}, rajada de
+ * {@code perChatBurst}) e no máximo {@code maxPendingPerChat} perguntas aceitas que
+ * ainda não começaram a ser respondidas. O que passar disso é juntado à última
+ * pergunta que ainda não começou (vira uma pergunta só) ou, se não houver nenhuma,
+ * recusado com um aviso para esperar. Assim um usuário mandando mensagem sem parar
+ * não enche a fila do Ollama nem o dispatcher que divide com outros chats.
+ *
+ * Com {@code coalesceWindowMs} > 0, a pergunta nova só é liberada ({@link #whenReady})
+ * depois de a janela passar sem outra mensagem do chat; o que chegar antes é juntado
+ * a ela. Quem manda a pergunta em 2-4 mensagens seguidas recebe uma resposta só, com
+ * uma chamada ao modelo. Cada mensagem reabre a janela, até no máximo
+ * {@value #MAX_COALESCE_WINDOWS} janelas desde a primeira.
+ *
+ * O {@link RequestLimiter.Flow} de cada chat leva o peso configurado em
+ * {@code chatWeights} para a fila justa do Ollama.
+ */
+public class ChatScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatScheduler.class.getName());
+
+    // Mensagens juntadas não passam do tamanho máximo de uma mensagem do Telegram
+    private static final int MAX_MERGED_CHARS = 4096;
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MAX_COALESCE_WINDOWS = 3;
+
+    /**
+     * O que aconteceu com a mensagem.
+     */
+    public enum Outcome {
+        /** Nova pergunta: despachar {@link Admission#getTurn()} via {@link #whenReady}. */
+        ACCEPTED,
+        /** Juntada a uma pergunta que ainda não começou; nada a fazer. */
+        MERGED,
+        /** Recusada; avisar o usuário se {@link Admission#shouldNotify()}. */
+        REJECTED
+    }
+
+    private final double perMinute;
+    private final int burst;
+    private final int maxPendingPerChat;
+    private final Map<Long, Double> weights;
+    private final long coalesceWindowNanos;
+    private final ScheduledExecutorService timer;
+    private final Map<Long, ChatState> chats = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long lastCleanup = System.nanoTime();
+
+    public ChatScheduler(Config.SchedulerConfig config) {
+        this.perMinute = config.getPerChatQuestionsPerMinute();
+        this.burst = config.getPerChatBurst();
+        this.maxPendingPerChat = config.getMaxPendingPerChat();
+        this.weights = Map.copyOf(config.getChatWeights());
+        this.coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(config.getCoalesceWindowMs());
+        this.timer = coalesceWindowNanos > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-coalesce");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        LOGGER.info("✅ ChatScheduler initialized - per chat: " + perMinute + "/min (burst " + burst
+                + "), maxPending: " + maxPendingPerChat + ", coalesce: " + config.getCoalesceWindowMs()
+                + "ms, weighted chats: " + weights.size());
+    }
+
+    /**
+     * Registra a mensagem de texto (não comando) do chat.
+     */
+    public Admission admit(long chatId, String text) {
+        removeIdleChats();
+        ChatState chat = chats.computeIfAbsent(chatId, id -> new ChatState(new TokenBucket(perMinute / 60, burst)));
+        synchronized (chat) {
+            Turn pending = chat.pending;
+            // Ainda dentro da janela: é continuação da mesma pergunta
+            if (pending != null && pending.collecting && fits(pending, text)) {
+                pending.text.append('\n').append(text);
+                pending.lastMessageAt = System.nanoTime();
+                schedule(pending);
+                coalesced.increment();
+                LOGGER.info("🧩 Coalesced message into the question of chat " + chatId);
+                return new Admission(Outcome.MERGED, pending, false);
+            }
+            if (chat.waiting < maxPendingPerChat && chat.bucket.tryTake()) {
+                Turn turn = new Turn(chat, text);
+                turn.collecting = coalesceWindowNanos > 0;
+                chat.waiting++;
+                chat.pending = turn;
+                accepted.increment();
+                return new Admission(Outcome.ACCEPTED, turn, false);
+            }
+            if (pending != null && fits(pending, text)) {
+                pending.text.append('\n').append(text);
+                merged.increment();
+                LOGGER.info("🧩 Merged message into the pending question of chat " + chatId);
+                return new Admission(Outcome.MERGED, pending, false);
+            }
+            rejected.increment();
+            long now = System.nanoTime();
+            boolean notify = now - chat.lastNoticeAt > NOTICE_INTERVAL_NANOS || chat.lastNoticeAt == 0;
+            if (notify) {
+                chat.lastNoticeAt = now;
+            }
+            LOGGER.info("🚦 Rejected message from chat " + chatId + " (rate limit)");
+            return new Admission(Outcome.REJECTED, null, notify);
+        }
+    }
+
+    /**
+     * Executa {@code task} (que despacha a pergunta) quando a janela de
+     * {@code coalesceWindowMs} da pergunta fechar; sem janela, na hora. Com janela,
+     * {@code task} roda na thread única do timer, compartilhada por todos os chats:
+     * ela não pode bloquear.
+     */
+    public void whenReady(Turn turn, Runnable task) {
+        synchronized (turn.chat) {
+            if (turn.collecting) {
+                turn.task = task;
+                schedule(turn);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    // Chamado com o lock do chat
+    private void schedule(Turn turn) {
+        if (turn.task == null) {
+            // Ainda sem tarefa: whenReady agenda com o lastMessageAt atual
+            return;
+        }
+        if (turn.timer != null) {
+            turn.timer.cancel(false);
+        }
+        long deadline = Math.min(turn.lastMessageAt + coalesceWindowNanos,
+                turn.firstMessageAt + MAX_COALESCE_WINDOWS * coalesceWindowNanos);
+        turn.timer = timer.schedule(() -> fire(turn), deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private void fire(Turn turn) {
+        Runnable task;
+        synchronized (turn.chat) {
+            if (!turn.collecting) {
+                return;
+            }
+            turn.collecting = false;
+            task = turn.task;
+        }
+        task.run();
+    }
+
+    /**
+     * Descarta as perguntas do chat que ainda não começaram (para o {@code /clear}):
+     * a janela aberta é fechada e as que já estão na fila do dispatcher recebem null
+     * em {@link Turn#start()}, sem chegar ao modelo nem ao histórico.
+     */
+    public void clear(long chatId) {
+        ChatState chat = chats.get(chatId);
+        if (chat == null) {
+            return;
+        }
+        synchronized (chat) {
+            chat.generation++;
+            chat.waiting = 0;
+            Turn pending = chat.pending;
+            if (pending != null) {
+                pending.collecting = false;
+                if (pending.timer != null) {
+                    pending.timer.cancel(false);
+                }
+                chat.pending = null;
+            }
+        }
+    }
+
+    private static boolean fits(Turn turn, String text) {
+        return turn.text.length() + text.length() < MAX_MERGED_CHARS;
+    }
+
+    public RequestLimiter.Flow flowOf(long chatId) {
+        return new RequestLimiter.Flow(chatId, weights.getOrDefault(chatId, 1.0));
+    }
+
+    public long getAccepted() { return accepted.sum(); }
+    public long getMerged()   { return merged.sum(); }
+    public long getCoalesced() { return coalesced.sum(); }
+    public long getRejected() { return rejected.sum(); }
+
+    public void writeMetrics(MetricsWriter out) {
+        out.counter("scheduler_accepted_total", "Messages that became a question to the model.", getAccepted())
+                .counter("scheduler_merged_total", "Messages merged into a question still waiting.", getMerged())
+                .counter("scheduler_coalesced_total", "Messages merged within the coalescing window.", getCoalesced())
+                .counter("scheduler_rejected_total", "Messages rejected by the per-chat rate limit.", getRejected())
+                .gauge("scheduler_chats", "Chats tracked by the scheduler.", chats.size());
+    }
+
+    public void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void removeIdleChats() {
+        long now = System.nanoTime();
+        if (now - lastCleanup < CLEANUP_INTERVAL_NANOS) {
+            return;
+        }
+        lastCleanup = now;
+        chats.values().removeIf(chat -> {
+            synchronized (chat) {
+                return chat.waiting == 0 && chat.bucket.isFull();
+            }
+        });
+    }
+
+    /**
+     * Resultado de {@link #admit}.
+     */
+    public static final class Admission {
+        private final Outcome outcome;
+        private final Turn turn;
+        private final boolean notify;
+
+        Admission(Outcome outcome, Turn turn, boolean notify) {
+            this.outcome = outcome;
+            this.turn = turn;
+            this.notify = notify;
+        }
+
+        public Outcome getOutcome()   { return outcome; }
+        public Turn getTurn()         { return turn; }
+        public boolean shouldNotify() { return notify; }
+    }
+
+    /**
+     * Uma pergunta ao modelo; mensagens podem ser juntadas a ela até ela começar.
+     */
+    public static final class Turn {
+        private final ChatState chat;
+        private final StringBuilder text;
+        private final long generation;
+        private final long firstMessageAt = System.nanoTime();
+        private long lastMessageAt = firstMessageAt;
+        // Dentro da janela de coalescência: recebe as próximas mensagens do chat
+        private boolean collecting;
+        private Runnable task;
+        private ScheduledFuture<?> timer;
+        private boolean started;
+
+        private Turn(ChatState chat, String text) {
+            this.chat = chat;
+            this.text = new StringBuilder(text);
+            this.generation = chat.generation;
+        }
+
+        /**
+         * Marca o início do processamento; a partir daqui nada mais é juntado.
+         * @return o texto da pergunta, com as mensagens juntadas, ou null se ela foi
+         *         descartada por {@link ChatScheduler#clear}
+         */
+        public String start() {
+            synchronized (chat) {
+                if (generation != chat.generation) {
+                    started = true;
+                    return null;
+                }
+                if (!started) {
+                    started = true;
+                    collecting = false;
+                    chat.waiting--;
+                    if (chat.pending == this) {
+                        chat.pending = null;
+                    }
+                }
+                return text.toString();
+            }
+        }
+    }
+
+    private static final class ChatState {
+        private final TokenBucket bucket;
+        // Última pergunta aceita que ainda não começou (recebe as mensagens juntadas)
+        private Turn pending;
+        // Perguntas aceitas que ainda não começaram
+        private int waiting;
+        // Muda a cada clear(): perguntas de antes dele são descartadas
+        private long generation;
+        private long lastNoticeAt;
+
+        ChatState(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -7,6 +7,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,19 +24,377 @@ public class Config {
     private String telegramToken;
     private String botUsername;
     private OllamaConfig ollama;
+    private DispatcherConfig dispatcher = new DispatcherConfig();
+    private SchedulerConfig scheduler = new SchedulerConfig();
+    private StreamingConfig streaming = new StreamingConfig();
+    private CacheConfig cache = new CacheConfig();
+    private SemanticCacheConfig semanticCache = new SemanticCacheConfig();
+    private MathEngineConfig mathEngine = new MathEngineConfig();
+    private MemoryConfig memory = new MemoryConfig();
+    private SummarizationConfig summarization = new SummarizationConfig();
+    private RoutingConfig routing = new RoutingConfig();
+    private WarmUpConfig warmUp = new WarmUpConfig();
+    private TelegramConfig telegram = new TelegramConfig();
+    private MetricsConfig metrics = new MetricsConfig();
+    private WebhookConfig webhook = new WebhookConfig();
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class OllamaConfig {
         private String baseUrl;
         private String model;
+        private int maxConcurrentRequests = 4;
+        private int maxQueuedRequests = 64;
+        private List<String> backends = new ArrayList<>();
+        private long healthCheckIntervalSeconds = 15;
+        private long generationTimeoutSeconds = 120;
+        private String keepAlive = "30m";
 
         public OllamaConfig() {} 
         
         public String getBaseUrl() { return baseUrl; }
         public String getModel()    { return model; }
+        public int getMaxConcurrentRequests() { return maxConcurrentRequests; }
+        public int getMaxQueuedRequests()     { return maxQueuedRequests; }
+        public List<String> getBackends()     { return backends; }
+        public long getHealthCheckIntervalSeconds() { return healthCheckIntervalSeconds; }
+        public long getGenerationTimeoutSeconds()   { return generationTimeoutSeconds; }
+        public String getKeepAlive()                { return keepAlive; }
+
+        /**
+         * URLs de todos os servidores Ollama: a lista 'backends' ou, se vazia, só o 'baseUrl'.
+         */
+        public List<String> getBackendUrls() {
+            return backends != null && !backends.isEmpty() ? backends : List.of(baseUrl);
+        }
 
         public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
         public void setModel(String model)     { this.model = model; }
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) { this.maxConcurrentRequests = maxConcurrentRequests; }
+        public void setMaxQueuedRequests(int maxQueuedRequests)         { this.maxQueuedRequests = maxQueuedRequests; }
+        public void setBackends(List<String> backends)                  { this.backends = backends; }
+        public void setHealthCheckIntervalSeconds(long healthCheckIntervalSeconds) { this.healthCheckIntervalSeconds = healthCheckIntervalSeconds; }
+        public void setGenerationTimeoutSeconds(long generationTimeoutSeconds)     { this.generationTimeoutSeconds = generationTimeoutSeconds; }
+        public void setKeepAlive(String keepAlive)                                 { this.keepAlive = keepAlive; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class DispatcherConfig {
+        private int workerThreads = 8;
+        private int maxInFlight = 256;
+
+        public DispatcherConfig() {}
+
+        public int getWorkerThreads() { return workerThreads; }
+        public int getMaxInFlight()   { return maxInFlight; }
+
+        public void setWorkerThreads(int workerThreads) { this.workerThreads = workerThreads; }
+        public void setMaxInFlight(int maxInFlight)     { this.maxInFlight = maxInFlight; }
+    }
+
+    /**
+     * Limite de perguntas por chat e pesos da fila justa do Ollama; veja {@link ChatScheduler}.
+     * 'chatWeights' dá a um chat (id) uma fatia maior (> 1) ou menor (< 1) do Ollama.
+     * 'coalesceWindowMs' junta mensagens seguidas do chat numa pergunta só (0, o padrão, desliga).
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SchedulerConfig {
+        private boolean enabled = true;
+        private double perChatQuestionsPerMinute = 20;
+        private int perChatBurst = 5;
+        private int maxPendingPerChat = 1;
+        private long coalesceWindowMs = 0;
+        private Map<Long, Double> chatWeights = new HashMap<>();
+
+        public SchedulerConfig() {}
+
+        public boolean isEnabled()                    { return enabled; }
+        public double getPerChatQuestionsPerMinute()  { return perChatQuestionsPerMinute; }
+        public int getPerChatBurst()                  { return perChatBurst; }
+        public int getMaxPendingPerChat()             { return maxPendingPerChat; }
+        public long getCoalesceWindowMs()             { return coalesceWindowMs; }
+        public Map<Long, Double> getChatWeights()     { return chatWeights; }
+
+        public void setEnabled(boolean enabled)                                 { this.enabled = enabled; }
+        public void setPerChatQuestionsPerMinute(double perChatQuestionsPerMinute) { this.perChatQuestionsPerMinute = perChatQuestionsPerMinute; }
+        public void setPerChatBurst(int perChatBurst)                           { this.perChatBurst = perChatBurst; }
+        public void setMaxPendingPerChat(int maxPendingPerChat)                 { this.maxPendingPerChat = maxPendingPerChat; }
+        public void setCoalesceWindowMs(long coalesceWindowMs)                  { this.coalesceWindowMs = coalesceWindowMs; }
+        public void setChatWeights(Map<Long, Double> chatWeights)               { this.chatWeights = chatWeights; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StreamingConfig {
+        private boolean enabled = true;
+        private long editIntervalMs = 1000;
+
+        public StreamingConfig() {}
+
+        public boolean isEnabled()      { return enabled; }
+        public long getEditIntervalMs() { return editIntervalMs; }
+
+        public void setEnabled(boolean enabled)            { this.enabled = enabled; }
+        public void setEditIntervalMs(long editIntervalMs) { this.editIntervalMs = editIntervalMs; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CacheConfig {
+        private boolean enabled = true;
+        private int maxEntries = 10_000;
+        private long ttlMinutes = 24 * 60;
+        private String snapshotPath;
+        private long snapshotIntervalSeconds = 300;
+
+        public CacheConfig() {}
+
+        public boolean isEnabled()               { return enabled; }
+        public int getMaxEntries()               { return maxEntries; }
+        public long getTtlMinutes()              { return ttlMinutes; }
+        public String getSnapshotPath()          { return snapshotPath; }
+        public long getSnapshotIntervalSeconds() { return snapshotIntervalSeconds; }
+
+        public void setEnabled(boolean enabled)                         { this.enabled = enabled; }
+        public void setMaxEntries(int maxEntries)                       { this.maxEntries = maxEntries; }
+        public void setTtlMinutes(long ttlMinutes)                      { this.ttlMinutes = ttlMinutes; }
+        public void setSnapshotPath(String snapshotPath)                { this.snapshotPath = snapshotPath; }
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) { this.snapshotIntervalSeconds = snapshotIntervalSeconds; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SemanticCacheConfig {
+        private boolean enabled = false;
+        private String embeddingModel = "nomic-embed-text";
+        private double similarityThreshold = 0.92;
+        private int maxEntries = 5_000;
+        private int m = 16;
+        private int efConstruction = 100;
+        private int efSearch = 64;
+
+        public SemanticCacheConfig() {}
+
+        public boolean isEnabled()              { return enabled; }
+        public String getEmbeddingModel()       { return embeddingModel; }
+        public double getSimilarityThreshold()  { return similarityThreshold; }
+        public int getMaxEntries()              { return maxEntries; }
+        public int getM()                       { return m; }
+        public int getEfConstruction()          { return efConstruction; }
+        public int getEfSearch()                { return efSearch; }
+
+        public void setEnabled(boolean enabled)                          { this.enabled = enabled; }
+        public void setEmbeddingModel(String embeddingModel)             { this.embeddingModel = embeddingModel; }
+        public void setSimilarityThreshold(double similarityThreshold)   { this.similarityThreshold = similarityThreshold; }
+        public void setMaxEntries(int maxEntries)                        { this.maxEntries = maxEntries; }
+        public void setM(int m)                                          { this.m = m; }
+        public void setEfConstruction(int efConstruction)                { this.efConstruction = efConstruction; }
+        public void setEfSearch(int efSearch)                            { this.efSearch = efSearch; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class MathEngineConfig {
+        private boolean enabled = true;
+
+        public MathEngineConfig() {}
+
+        public boolean isEnabled() { return enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class MemoryConfig {
+        private int maxMessages = 20;
+        private int maxHistoryTokens = 2_000;
+        private long idleTtlMinutes = 12 * 60;
+        private long maxTotalTokens = 20_000_000;
+        private long sweepIntervalSeconds = 60;
+        private boolean persistent = false;
+        private String directory = "data/chat-memory";
+        private int segmentSizeMb = 64;
+        private long snapshotIntervalSeconds = 300;
+
+        public MemoryConfig() {}
+
+        public int getMaxMessages()            { return maxMessages; }
+        public int getMaxHistoryTokens()       { return maxHistoryTokens; }
+        public long getIdleTtlMinutes()        { return idleTtlMinutes; }
+        public long getMaxTotalTokens()        { return maxTotalTokens; }
+        public long getSweepIntervalSeconds()  { return sweepIntervalSeconds; }
+        public boolean isPersistent()          { return persistent; }
+        public String getDirectory()           { return directory; }
+        public int getSegmentSizeMb()          { return segmentSizeMb; }
+        public long getSnapshotIntervalSeconds() { return snapshotIntervalSeconds; }
+
+        public void setMaxMessages(int maxMessages)                    { this.maxMessages = maxMessages; }
+        public void setMaxHistoryTokens(int maxHistoryTokens)          { this.maxHistoryTokens = maxHistoryTokens; }
+        public void setIdleTtlMinutes(long idleTtlMinutes)             { this.idleTtlMinutes = idleTtlMinutes; }
+        public void setMaxTotalTokens(long maxTotalTokens)             { this.maxTotalTokens = maxTotalTokens; }
+        public void setSweepIntervalSeconds(long sweepIntervalSeconds) { this.sweepIntervalSeconds = sweepIntervalSeconds; }
+        public void setPersistent(boolean persistent)                  { this.persistent = persistent; }
+        public void setDirectory(String directory)                     { this.directory = directory; }
+        public void setSegmentSizeMb(int segmentSizeMb)                { this.segmentSizeMb = segmentSizeMb; }
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) { this.snapshotIntervalSeconds = snapshotIntervalSeconds; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SummarizationConfig {
+        private boolean enabled = false;
+        private String model;
+        private int triggerTokens = 1_200;
+        private int keepRecentMessages = 4;
+        private int maxConcurrent = 1;
+
+        public SummarizationConfig() {}
+
+        public boolean isEnabled()          { return enabled; }
+        public String getModel()            { return model; }
+        public int getTriggerTokens()       { return triggerTokens; }
+        public int getKeepRecentMessages()  { return keepRecentMessages; }
+        public int getMaxConcurrent()       { return maxConcurrent; }
+
+        public void setEnabled(boolean enabled)                    { this.enabled = enabled; }
+        public void setModel(String model)                         { this.model = model; }
+        public void setTriggerTokens(int triggerTokens)            { this.triggerTokens = triggerTokens; }
+        public void setKeepRecentMessages(int keepRecentMessages)  { this.keepRecentMessages = keepRecentMessages; }
+        public void setMaxConcurrent(int maxConcurrent)            { this.maxConcurrent = maxConcurrent; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class RoutingConfig {
+        private boolean enabled = false;
+        private List<RouteConfig> routes = new ArrayList<>();
+
+        public RoutingConfig() {}
+
+        public boolean isEnabled()          { return enabled; }
+        public List<RouteConfig> getRoutes() { return routes; }
+
+        public void setEnabled(boolean enabled)           { this.enabled = enabled; }
+        public void setRoutes(List<RouteConfig> routes)   { this.routes = routes; }
+    }
+
+    /**
+     * Uma rota do {@link ModelRouter}: perguntas com nota até 'maxScore' vão para 'model'.
+     * Sem 'maxScore', a rota aceita qualquer nota.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class RouteConfig {
+        private String name;
+        private String model;
+        private int maxScore = Integer.MAX_VALUE;
+
+        public RouteConfig() {}
+
+        public RouteConfig(String name, String model, int maxScore) {
+            this.name = name;
+            this.model = model;
+            this.maxScore = maxScore;
+        }
+
+        public String getName()  { return name; }
+        public String getModel() { return model; }
+        public int getMaxScore() { return maxScore; }
+
+        public void setName(String name)       { this.name = name; }
+        public void setModel(String model)     { this.model = model; }
+        public void setMaxScore(int maxScore)  { this.maxScore = maxScore; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class WarmUpConfig {
+        private boolean enabled = true;
+        private long timeoutSeconds = 300;
+        private long refreshIntervalSeconds = 600;
+
+        public WarmUpConfig() {}
+
+        public boolean isEnabled()              { return enabled; }
+        public long getTimeoutSeconds()         { return timeoutSeconds; }
+        public long getRefreshIntervalSeconds() { return refreshIntervalSeconds; }
+
+        public void setEnabled(boolean enabled)                            { this.enabled = enabled; }
+        public void setTimeoutSeconds(long timeoutSeconds)                 { this.timeoutSeconds = timeoutSeconds; }
+        public void setRefreshIntervalSeconds(long refreshIntervalSeconds) { this.refreshIntervalSeconds = refreshIntervalSeconds; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class TelegramConfig {
+        private String mode = "polling";
+        private String apiUrl = "https://api.telegram.org";
+        private double globalMessagesPerSecond = 30;
+        private double perChatMessagesPerSecond = 1;
+        private int perChatBurst = 3;
+        private int maxRetries = 5;
+        private int sendThreads = 4;
+
+        public TelegramConfig() {}
+
+        public String getMode()                     { return mode; }
+        public boolean isWebhook()                  { return "webhook".equalsIgnoreCase(mode); }
+        public String getApiUrl()                   { return apiUrl; }
+        public double getGlobalMessagesPerSecond()  { return globalMessagesPerSecond; }
+        public double getPerChatMessagesPerSecond() { return perChatMessagesPerSecond; }
+        public int getPerChatBurst()                { return perChatBurst; }
+        public int getMaxRetries()                  { return maxRetries; }
+        public int getSendThreads()                 { return sendThreads; }
+
+        public void setMode(String mode)                                         { this.mode = mode; }
+        public void setApiUrl(String apiUrl)                                     { this.apiUrl = apiUrl; }
+        public void setGlobalMessagesPerSecond(double globalMessagesPerSecond)   { this.globalMessagesPerSecond = globalMessagesPerSecond; }
+        public void setPerChatMessagesPerSecond(double perChatMessagesPerSecond) { this.perChatMessagesPerSecond = perChatMessagesPerSecond; }
+        public void setPerChatBurst(int perChatBurst)                            { this.perChatBurst = perChatBurst; }
+        public void setMaxRetries(int maxRetries)                                { this.maxRetries = maxRetries; }
+        public void setSendThreads(int sendThreads)                              { this.sendThreads = sendThreads; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class MetricsConfig {
+        private boolean enabled = false;
+        private String host = "127.0.0.1";
+        private int port = 9464;
+
+        public MetricsConfig() {}
+
+        public boolean isEnabled() { return enabled; }
+        public String getHost()    { return host; }
+        public int getPort()       { return port; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public void setHost(String host)        { this.host = host; }
+        public void setPort(int port)           { this.port = port; }
+    }
+
+    /**
+     * Recebimento de updates por webhook (telegram.mode = "webhook").
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class WebhookConfig {
+        private String url;
+        private String host = "0.0.0.0";
+        private int port = 8443;
+        private String path = "/telegram/webhook";
+        private String secretToken;
+        private int maxConnections = 40;
+        private int threads = 4;
+        private boolean dropPendingUpdates = false;
+
+        public WebhookConfig() {}
+
+        public String getUrl()               { return url; }
+        public String getHost()              { return host; }
+        public int getPort()                 { return port; }
+        public String getPath()              { return path; }
+        public String getSecretToken()       { return secretToken; }
+        public int getMaxConnections()       { return maxConnections; }
+        public int getThreads()              { return threads; }
+        public boolean isDropPendingUpdates() { return dropPendingUpdates; }
+
+        public void setUrl(String url)                             { this.url = url; }
+        public void setHost(String host)                           { this.host = host; }
+        public void setPort(int port)                              { this.port = port; }
+        public void setPath(String path)                           { this.path = path; }
+        public void setSecretToken(String secretToken)             { this.secretToken = secretToken; }
+        public void setMaxConnections(int maxConnections)          { this.maxConnections = maxConnections; }
+        public void setThreads(int threads)                        { this.threads = threads; }
+        public void setDropPendingUpdates(boolean dropPendingUpdates) { this.dropPendingUpdates = dropPendingUpdates; }
     }
 
     public static Config load() throws Exception {
@@ -82,20 +446,185 @@ public class Config {
         if (ollama == null) {
             throw new IllegalStateException("❌ Seção 'ollama' não encontrada no bot-config.json.");
         }
-        if (ollama.baseUrl == null || ollama.baseUrl.isBlank()) {
-            throw new IllegalStateException("❌ 'ollama.baseUrl' não configurado no bot-config.json.");
+        boolean hasBackends = ollama.backends != null && !ollama.backends.isEmpty();
+        if (!hasBackends && (ollama.baseUrl == null || ollama.baseUrl.isBlank())) {
+            throw new IllegalStateException("❌ 'ollama.baseUrl' (ou 'ollama.backends') não configurado no bot-config.json.");
+        }
+        if (hasBackends && ollama.backends.stream().anyMatch(url -> url == null || url.isBlank())) {
+            throw new IllegalStateException("❌ 'ollama.backends' contém uma URL vazia.");
         }
         if (ollama.model == null || ollama.model.isBlank()) {
             throw new IllegalStateException("❌ 'ollama.model' não configurado no bot-config.json.");
         }
+        if (ollama.maxConcurrentRequests <= 0 || ollama.maxQueuedRequests < 0) {
+            throw new IllegalStateException("❌ 'ollama.maxConcurrentRequests' deve ser > 0 e 'ollama.maxQueuedRequests' >= 0.");
+        }
+        if (ollama.generationTimeoutSeconds <= 0) {
+            throw new IllegalStateException("❌ 'ollama.generationTimeoutSeconds' deve ser maior que zero.");
+        }
+        // Mesmo formato do Ollama: segundos ("-1" = para sempre) ou duração ("30m", "1h30m")
+        if (ollama.keepAlive != null && !ollama.keepAlive.matches("-?\\d+|(\\d+(\\.\\d+)?(ms|s|m|h))+")) {
+            throw new IllegalStateException("❌ 'ollama.keepAlive' deve ser um número de segundos (-1 = sempre) ou uma duração como \"30m\".");
+        }
+        if (dispatcher == null) {
+            dispatcher = new DispatcherConfig();
+        }
+        if (dispatcher.workerThreads <= 0 || dispatcher.maxInFlight <= 0) {
+            throw new IllegalStateException("❌ 'dispatcher.workerThreads' e 'maxInFlight' devem ser maiores que zero.");
+        }
+        if (streaming == null) {
+            streaming = new StreamingConfig();
+        }
+        if (cache == null) {
+            cache = new CacheConfig();
+        }
+        if (cache.enabled && cache.maxEntries <= 0) {
+            throw new IllegalStateException("❌ 'cache.maxEntries' deve ser maior que zero.");
+        }
+        if (semanticCache == null) {
+            semanticCache = new SemanticCacheConfig();
+        }
+        if (mathEngine == null) {
+            mathEngine = new MathEngineConfig();
+        }
+        if (memory == null) {
+            memory = new MemoryConfig();
+        }
+        if (memory.maxMessages <= 0 || memory.maxHistoryTokens <= 0) {
+            throw new IllegalStateException("❌ 'memory.maxMessages' e 'memory.maxHistoryTokens' devem ser maiores que zero.");
+        }
+        if (memory.persistent && (memory.directory == null || memory.directory.isBlank()
+                || memory.segmentSizeMb <= 0 || memory.segmentSizeMb > 1024)) {
+            throw new IllegalStateException("❌ 'memory.directory' é obrigatório e 'memory.segmentSizeMb' deve estar entre 1 e 1024.");
+        }
+        if (summarization == null) {
+            summarization = new SummarizationConfig();
+        }
+        if (summarization.enabled) {
+            if (summarization.triggerTokens <= 0 || summarization.triggerTokens >= memory.maxHistoryTokens) {
+                throw new IllegalStateException("❌ 'summarization.triggerTokens' deve ser maior que zero e menor que 'memory.maxHistoryTokens'.");
+            }
+            if (summarization.keepRecentMessages < 0 || summarization.maxConcurrent <= 0) {
+                throw new IllegalStateException("❌ 'summarization.keepRecentMessages' deve ser >= 0 e 'maxConcurrent' > 0.");
+            }
+        }
+        if (routing == null) {
+            routing = new RoutingConfig();
+        }
+        if (routing.enabled) {
+            if (routing.routes == null || routing.routes.isEmpty()) {
+                throw new IllegalStateException("❌ 'routing.routes' precisa de pelo menos uma rota.");
+            }
+            Set<String> names = new HashSet<>();
+            for (RouteConfig route : routing.routes) {
+                if (route == null || route.name == null || route.name.isBlank() || route.model == null
+                        || route.model.isBlank() || route.maxScore < 0 || !names.add(route.name)) {
+                    throw new IllegalStateException("❌ 'routing.routes': cada rota precisa de 'name' único, 'model' e 'maxScore' >= 0.");
+                }
+            }
+        }
+        if (scheduler == null) {
+            scheduler = new SchedulerConfig();
+        }
+        if (scheduler.chatWeights == null) {
+            scheduler.chatWeights = new HashMap<>();
+        }
+        if (scheduler.enabled && (scheduler.perChatQuestionsPerMinute <= 0 || scheduler.perChatBurst < 1
+                || scheduler.maxPendingPerChat < 1 || scheduler.coalesceWindowMs < 0)) {
+            throw new IllegalStateException("❌ 'scheduler': perChatQuestionsPerMinute > 0, perChatBurst >= 1, maxPendingPerChat >= 1, coalesceWindowMs >= 0.");
+        }
+        for (Double weight : scheduler.chatWeights.values()) {
+            if (weight == null || !(weight > 0)) {
+                throw new IllegalStateException("❌ 'scheduler.chatWeights': os pesos devem ser maiores que zero.");
+            }
+        }
+        if (warmUp == null) {
+            warmUp = new WarmUpConfig();
+        }
+        if (warmUp.enabled && (warmUp.timeoutSeconds <= 0 || warmUp.refreshIntervalSeconds <= 0)) {
+            throw new IllegalStateException("❌ 'warmUp.timeoutSeconds' e 'warmUp.refreshIntervalSeconds' devem ser maiores que zero.");
+        }
+        if (telegram == null) {
+            telegram = new TelegramConfig();
+        }
+        if (telegram.globalMessagesPerSecond < 1 || telegram.perChatMessagesPerSecond <= 0 || telegram.perChatBurst < 1
+                || telegram.maxRetries < 0 || telegram.sendThreads <= 0) {
+            throw new IllegalStateException("❌ 'telegram': globalMessagesPerSecond >= 1, perChatMessagesPerSecond > 0, perChatBurst >= 1, sendThreads > 0.");
+        }
+        if (telegram.apiUrl == null || telegram.apiUrl.isBlank()) {
+            throw new IllegalStateException("❌ 'telegram.apiUrl' não pode ser vazio.");
+        }
+        if (!"polling".equalsIgnoreCase(telegram.mode) && !telegram.isWebhook()) {
+            throw new IllegalStateException("❌ 'telegram.mode' deve ser \"polling\" ou \"webhook\".");
+        }
+        if (webhook == null) {
+            webhook = new WebhookConfig();
+        }
+        if (telegram.isWebhook()) {
+            if (webhook.url == null || !webhook.url.startsWith("https://")) {
+                throw new IllegalStateException("❌ 'webhook.url' deve ser a URL pública HTTPS do bot (o Telegram só chama HTTPS).");
+            }
+            // O Telegram aceita 1-256 caracteres: letras, números, '_' e '-'
+            if (webhook.secretToken == null || !webhook.secretToken.matches("[A-Za-z0-9_-]{1,256}")) {
+                throw new IllegalStateException("❌ 'webhook.secretToken' é obrigatório (1-256 caracteres: A-Z, a-z, 0-9, _ e -).");
+            }
+            if (webhook.path == null || !webhook.path.startsWith("/") || webhook.port < 0 || webhook.port > 65535
+                    || webhook.threads <= 0 || webhook.maxConnections < 1 || webhook.maxConnections > 100) {
+                throw new IllegalStateException("❌ 'webhook': path começando com '/', port 0-65535, threads > 0, maxConnections 1-100.");
+            }
+        }
+        if (metrics == null) {
+            metrics = new MetricsConfig();
+        }
+        if (metrics.enabled && (metrics.host == null || metrics.host.isBlank() || metrics.port < 0 || metrics.port > 65535)) {
+            throw new IllegalStateException("❌ 'metrics.host' e 'metrics.port' (0-65535) devem ser válidos.");
+        }
+        if (semanticCache.enabled) {
+            if (semanticCache.embeddingModel == null || semanticCache.embeddingModel.isBlank()) {
+                throw new IllegalStateException("❌ 'semanticCache.embeddingModel' não configurado no bot-config.json.");
+            }
+            if (semanticCache.similarityThreshold <= 0 || semanticCache.similarityThreshold > 1) {
+                throw new IllegalStateException("❌ 'semanticCache.similarityThreshold' deve estar entre 0 e 1.");
+            }
+            if (semanticCache.maxEntries <= 1 || semanticCache.m < 2 || semanticCache.efConstruction <= 0 || semanticCache.efSearch <= 0) {
+                throw new IllegalStateException("❌ 'semanticCache': maxEntries > 1, m >= 2, efConstruction e efSearch > 0.");
+            }
+        }
     }
 
     public String getTelegramToken() { return telegramToken; }
     public String getBotUsername()   { return botUsername; }
-    public String getOllamaBaseUrl() { return ollama.baseUrl; }
+    public String getOllamaBaseUrl() { return ollama.getBackendUrls().get(0); }
     public String getOllamaModel()   { return ollama.model; }
+    public OllamaConfig getOllama()  { return ollama; }
+    public DispatcherConfig getDispatcher() { return dispatcher; }
+    public SchedulerConfig getScheduler()   { return scheduler; }
+    public StreamingConfig getStreaming()   { return streaming; }
+    public CacheConfig getCache()           { return cache; }
+    public SemanticCacheConfig getSemanticCache() { return semanticCache; }
+    public MathEngineConfig getMathEngine() { return mathEngine; }
+    public MemoryConfig getMemory()         { return memory; }
+    public SummarizationConfig getSummarization() { return summarization; }
+    public RoutingConfig getRouting()       { return routing; }
+    public WarmUpConfig getWarmUp()         { return warmUp; }
+    public TelegramConfig getTelegram()     { return telegram; }
+    public MetricsConfig getMetrics()       { return metrics; }
+    public WebhookConfig getWebhook()       { return webhook; }
 
     public void setTelegramToken(String telegramToken) { this.telegramToken = telegramToken; }
     public void setBotUsername(String botUsername)     { this.botUsername = botUsername; }
     public void setOllama(OllamaConfig ollama)         { this.ollama = ollama; }
+    public void setDispatcher(DispatcherConfig dispatcher) { this.dispatcher = dispatcher; }
+    public void setScheduler(SchedulerConfig scheduler)    { this.scheduler = scheduler; }
+    public void setStreaming(StreamingConfig streaming)    { this.streaming = streaming; }
+    public void setCache(CacheConfig cache)                { this.cache = cache; }
+    public void setSemanticCache(SemanticCacheConfig semanticCache) { this.semanticCache = semanticCache; }
+    public void setMathEngine(MathEngineConfig mathEngine) { this.mathEngine = mathEngine; }
+    public void setMemory(MemoryConfig memory)             { this.memory = memory; }
+    public void setSummarization(SummarizationConfig summarization) { this.summarization = summarization; }
+    public void setRouting(RoutingConfig routing)          { this.routing = routing; }
+    public void setWarmUp(WarmUpConfig warmUp)             { this.warmUp = warmUp; }
+    public void setTelegram(TelegramConfig telegram)       { this.telegram = telegram; }
+    public void setMetrics(MetricsConfig metrics)          { this.metrics = metrics; }
+    public void setWebhook(WebhookConfig webhook)          { this.webhook = webhook; }
 }
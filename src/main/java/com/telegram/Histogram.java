@@ -0,0 +1,92 @@
+package com.telegram;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma com faixas fixas, no formato do Prometheus (contagem por limite
+ * superior "le", soma e total).
+ *
+ * Registrar um valor é uma busca binária e dois incrementos em {@link LongAdder},
+ * sem lock nem alocação, então dá para chamar em todo update. As contagens só são
+ * acumuladas (cumulativas) na hora de exportar.
+ */
+public class Histogram {
+
+    // Segundos: de 1ms (fila, envio) a 2min (timeout do Ollama)
+    private static final double[] LATENCY_BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120
+    };
+
+    // Tokens por segundo: CPU fraca gera ~2 tok/s, GPU boa passa de 100 (prompt passa de 1000)
+    private static final double[] RATE_BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    public Histogram(double... bounds) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        // Uma faixa a mais para "+Inf"
+        this.buckets = new LongAdder[this.bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /** Histograma para durações, em segundos. */
+    public static Histogram latency() {
+        return new Histogram(LATENCY_BOUNDS);
+    }
+
+    /** Histograma para velocidades de geração, em tokens por segundo. */
+    public static Histogram rate() {
+        return new Histogram(RATE_BOUNDS);
+    }
+
+    public void observe(double value) {
+        int index = Arrays.binarySearch(bounds, value);
+        // Sem acerto exato, binarySearch devolve -(ponto de inserção) - 1
+        buckets[index >= 0 ? index : -index - 1].increment();
+        sum.add(value);
+    }
+
+    /** Registra uma duração medida com {@link System#nanoTime()}, em segundos. */
+    public void observeNanos(long nanos) {
+        observe(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Contagens cumulativas: o item i conta os valores ≤ bounds[i]; o último é o total (+Inf).
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,143 @@
+package com.telegram;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resume o começo de conversas longas em segundo plano.
+ *
+ * Quando o histórico de um chat passa de {@code triggerTokens}, as mensagens mais
+ * antigas (menos as {@code keepRecentMessages} últimas) são enviadas a um modelo,
+ * de preferência menor, e trocadas no {@link ChatMemory} por uma única mensagem de
+ * resumo. Assim o prompt de cada pergunta fica menor sem perder o contexto, como
+ * aconteceria só cortando as mensagens mais velhas. Nada disso acontece no caminho
+ * da resposta ao usuário: o resumo só roda quando não há perguntas na fila do Ollama.
+ */
+public class HistorySummarizer {
+
+    private static final Logger LOGGER = Logger.getLogger(HistorySummarizer.class.getName());
+
+    private static final String INSTRUCTIONS =
+            "Resuma a conversa abaixo entre um aluno e um tutor de matemática em PT-BR, em no máximo 6 frases. " +
+            "Mantenha o que importa para continuar a conversa: dados do aluno, problemas discutidos, " +
+            "resultados obtidos e dúvidas em aberto. Não invente nada. Responda só com o resumo.";
+    private static final String SUMMARY_PREFIX = "Resumo da conversa até aqui: ";
+
+    private final OllamaClient ollamaClient;
+    private final ChatMemory chatMemory;
+    private final String model;
+    private final int triggerTokens;
+    private final int keepRecentMessages;
+    private final int maxConcurrent;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder summaries = new LongAdder();
+    private final LongAdder tokensSaved = new LongAdder();
+
+    public HistorySummarizer(OllamaClient ollamaClient, ChatMemory chatMemory, Config.SummarizationConfig config) {
+        this.ollamaClient = ollamaClient;
+        this.chatMemory = chatMemory;
+        this.model = config.getModel() == null || config.getModel().isBlank()
+                ? ollamaClient.getModelName() : config.getModel();
+        this.triggerTokens = config.getTriggerTokens();
+        this.keepRecentMessages = config.getKeepRecentMessages();
+        this.maxConcurrent = config.getMaxConcurrent();
+
+        LOGGER.info("✅ HistorySummarizer initialized - model: " + model + ", triggerTokens: " + triggerTokens
+                + ", keepRecent: " + keepRecentMessages);
+    }
+
+    /**
+     * Agenda o resumo do chat se o histórico passou do limite. Retorna na hora.
+     */
+    public void maybeSummarize(Long chatId) {
+        if (chatMemory.getHistoryTokens(chatId) < triggerTokens) {
+            return;
+        }
+        // Perguntas de usuários esperando têm prioridade; tenta de novo na próxima resposta
+        if (ollamaClient.getLimiter().getQueued() > 0) {
+            return;
+        }
+        if (!pending.add(chatId)) {
+            return;
+        }
+        if (running.incrementAndGet() > maxConcurrent) {
+            running.decrementAndGet();
+            pending.remove(chatId);
+            return;
+        }
+
+        ChatMemory.Compaction compaction = chatMemory.beginCompaction(chatId, keepRecentMessages);
+        if (compaction == null) {
+            finish(chatId);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        ollamaClient.completeAsync(model, INSTRUCTIONS, transcript(compaction))
+                .whenComplete((summary, error) -> {
+                    try {
+                        if (error != null) {
+                            LOGGER.log(Level.WARNING, "History summary failed for chat " + chatId + ": "
+                                    + OllamaClient.describeError(error));
+                        } else if (summary != null && !summary.isBlank()) {
+                            apply(chatId, compaction, summary.trim(), System.currentTimeMillis() - start);
+                        }
+                    } finally {
+                        finish(chatId);
+                    }
+                });
+    }
+
+    public long getSummaries()   { return summaries.sum(); }
+    public long getTokensSaved() { return tokensSaved.sum(); }
+
+    private void apply(Long chatId, ChatMemory.Compaction compaction, String summary, long elapsedMillis) {
+        ChatMessage message = new ChatMessage(ChatMessage.Role.SYSTEM, SUMMARY_PREFIX + summary);
+        int before = 0;
+        for (ChatMessage replaced : compaction.getMessages()) {
+            before += replaced.estimatedTokens();
+        }
+        if (message.estimatedTokens() >= before) {
+            LOGGER.info("Summary for chat " + chatId + " is not shorter than the original, keeping history");
+            return;
+        }
+        if (!chatMemory.completeCompaction(compaction, message)) {
+            LOGGER.fine("Chat " + chatId + " changed while summarizing, summary discarded");
+            return;
+        }
+        summaries.increment();
+        tokensSaved.add(before - message.estimatedTokens());
+        LOGGER.info("🗜️ Chat " + chatId + " history summarized: " + compaction.getMessages().size()
+                + " messages, ~" + before + " → ~" + message.estimatedTokens() + " tokens in " + elapsedMillis + "ms");
+    }
+
+    private void finish(Long chatId) {
+        running.decrementAndGet();
+        pending.remove(chatId);
+    }
+
+    private static String transcript(ChatMemory.Compaction compaction) {
+        StringBuilder text = new StringBuilder();
+        for (ChatMessage message : compaction.getMessages()) {
+            switch (message.role()) {
+                case USER:
+                    text.append("Aluno: ");
+                    break;
+                case ASSISTANT:
+                    text.append("Tutor: ");
+                    break;
+                default:
+                    // Resumo anterior: entra de novo no novo resumo
+                    break;
+            }
+            text.append(message.content()).append('\n');
+        }
+        return text.toString();
+    }
+}
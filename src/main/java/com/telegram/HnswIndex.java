@@ -0,0 +1,305 @@
+package com.telegram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de vizinhos mais próximos aproximado (HNSW - Hierarchical Navigable Small World).
+ *
+ * Guarda vetores {@code float[]} normalizados e usa similaridade de cosseno (produto
+ * interno). Cada nó vive em uma camada aleatória; a busca desce pelas camadas de
+ * cima (poucos nós, saltos longos) até a camada 0 (todos os nós), visitando só uma
+ * pequena parte do grafo. Inserções usam lock de escrita; buscas rodam em paralelo.
+ */
+public class HnswIndex {
+
+    private static final Comparator<Neighbor> BEST_FIRST = (a, b) -> Float.compare(b.similarity, a.similarity);
+    private static final Comparator<Neighbor> WORST_FIRST = (a, b) -> Float.compare(a.similarity, b.similarity);
+
+    private final int m;
+    private final int maxLinksLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final List<Node> nodes = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimension = -1;
+
+    /**
+     * @param m número de vizinhos por nó nas camadas superiores (2*m na camada 0)
+     * @param efConstruction tamanho da lista de candidatos ao inserir
+     */
+    public HnswIndex(int m, int efConstruction) {
+        if (m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("m deve ser >= 2 e efConstruction >= 1");
+        }
+        this.m = m;
+        this.maxLinksLevel0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * Um resultado da busca: id do vetor e similaridade de cosseno com a consulta.
+     */
+    public static final class Neighbor {
+        public final int id;
+        public final float similarity;
+
+        Neighbor(int id, float similarity) {
+            this.id = id;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Insere um vetor (é copiado e normalizado).
+     * @return o id do vetor, sequencial a partir de 0.
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            if (dimension < 0) {
+                dimension = normalized.length;
+            } else if (dimension != normalized.length) {
+                throw new IllegalArgumentException("Dimensão " + normalized.length + " diferente do índice (" + dimension + ")");
+            }
+
+            int level = randomLevel();
+            int id = nodes.size();
+            nodes.add(new Node(normalized, level));
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+
+            List<Neighbor> entryPoints = new ArrayList<>();
+            entryPoints.add(new Neighbor(current, dot(normalized, nodes.get(current).vector)));
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Neighbor> candidates = searchLayer(normalized, entryPoints, efConstruction, l);
+                int linked = 0;
+                for (Neighbor neighbor : candidates) {
+                    if (linked++ == m) {
+                        break;
+                    }
+                    connect(id, neighbor.id, neighbor.similarity, l);
+                    connect(neighbor.id, id, neighbor.similarity, l);
+                }
+                entryPoints = candidates;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca os {@code k} vetores mais parecidos com a consulta.
+     * @param ef tamanho da lista de candidatos (maior = mais preciso e mais lento)
+     * @return vizinhos do mais para o menos parecido
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            if (normalized.length != dimension) {
+                throw new IllegalArgumentException("Dimensão " + normalized.length + " diferente do índice (" + dimension + ")");
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            List<Neighbor> entryPoints = new ArrayList<>();
+            entryPoints.add(new Neighbor(current, dot(normalized, nodes.get(current).vector)));
+            List<Neighbor> result = searchLayer(normalized, entryPoints, Math.max(ef, k), 0);
+            return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Na camada {@code level}, anda sempre para o vizinho mais parecido até não melhorar.
+     */
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = dot(query, nodes.get(current).vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            int[] links = node.links[level];
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                float similarity = dot(query, nodes.get(links[i]).vector);
+                if (similarity > best) {
+                    best = similarity;
+                    current = links[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Busca em largura guiada pela similaridade, mantendo os {@code ef} melhores.
+     * @return candidatos do mais para o menos parecido
+     */
+    private List<Neighbor> searchLayer(float[] query, List<Neighbor> entryPoints, int ef, int level) {
+        boolean[] visited = new boolean[nodes.size()];
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(WORST_FIRST);
+
+        for (Neighbor entry : entryPoints) {
+            if (!visited[entry.id]) {
+                visited[entry.id] = true;
+                candidates.add(entry);
+                results.add(entry);
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity < results.peek().similarity) {
+                break;
+            }
+            Node node = nodes.get(candidate.id);
+            if (node.level < level) {
+                continue;
+            }
+            int[] links = node.links[level];
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                int next = links[i];
+                if (visited[next]) {
+                    continue;
+                }
+                visited[next] = true;
+                float similarity = dot(query, nodes.get(next).vector);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Neighbor neighbor = new Neighbor(next, similarity);
+                    candidates.add(neighbor);
+                    results.add(neighbor);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Liga {@code from -> to}. Com a lista cheia, substitui o vizinho menos parecido
+     * se o novo for melhor.
+     */
+    private void connect(int from, int to, float similarity, int level) {
+        Node node = nodes.get(from);
+        int[] links = node.links[level];
+        int count = node.linkCounts[level];
+        for (int i = 0; i < count; i++) {
+            if (links[i] == to) {
+                return;
+            }
+        }
+        if (count < links.length) {
+            links[count] = to;
+            node.linkCounts[level]++;
+            return;
+        }
+        int worst = -1;
+        float worstSimilarity = similarity;
+        for (int i = 0; i < count; i++) {
+            float s = dot(node.vector, nodes.get(links[i]).vector);
+            if (s < worstSimilarity) {
+                worstSimilarity = s;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            links[worst] = to;
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] copy = new float[vector.length];
+        if (norm == 0) {
+            return copy;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            copy[i] = (float) (vector[i] / norm);
+        }
+        return copy;
+    }
+
+    private final class Node {
+        final float[] vector;
+        final int level;
+        final int[][] links;
+        final int[] linkCounts;
+
+        Node(float[] vector, int level) {
+            this.vector = vector;
+            this.level = level;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[l == 0 ? maxLinksLevel0 : m];
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.telegram;
 
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
 import java.util.logging.Logger;
@@ -16,30 +17,13 @@ public class Main {
             // 1. Carrega a configuração (Config.java)
             Config config = Config.load();
 
-            String token = config.getTelegramToken();
-            String username = config.getBotUsername();
-            String ollamaUrl = config.getOllamaBaseUrl();
-            String ollamaModel = config.getOllamaModel();
+            Runnable stop = start(config);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                LOGGER.info("🛑 Encerrando, aguardando updates em andamento...");
+                stop.run();
+            }));
             
-            // 2. Cria o cliente Ollama (OllamaClient.java)
-            OllamaClient ollamaClient = new OllamaClient(ollamaUrl, ollamaModel);
-            
-            // Verifica a conexão com o Ollama antes de iniciar o bot
-            if (!ollamaClient.testConnection()) {
-                LOGGER.severe("🚨 Não foi possível conectar ao Ollama. O bot será iniciado, mas não funcionará.");
-                // Continua, mas o erro será tratado pelo TelegramBot/OllamaClient
-            } else {
-                LOGGER.info("🎉 Conexão com Ollama bem-sucedida!");
-            }
-
-            // 3. Inicializa o API do Telegram Bots
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-
-            // 4. Registra o Bot (TelegramBot.java)
-            TelegramBot bot = new TelegramBot(token, username, ollamaClient);
-            botsApi.registerBot(bot);
-            
-            LOGGER.info("🚀 Telegram Bot iniciado com sucesso! (@" + username + ")");
+            LOGGER.info("🚀 Telegram Bot iniciado com sucesso! (@" + config.getBotUsername() + ")");
 
         } catch (TelegramApiException e) {
             LOGGER.log(Level.SEVERE, "❌ Erro ao registrar o Telegram Bot na API", e);
@@ -47,4 +31,81 @@ public class Main {
             LOGGER.log(Level.SEVERE, "❌ Erro fatal na inicialização da aplicação", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sobe o bot com a configuração já carregada (também usado pelo teste de carga).
+     * @return ação que encerra o bot e libera os recursos
+     */
+    static Runnable start(Config config) throws TelegramApiException {
+        // 2. Cria o cliente Ollama (OllamaClient.java)
+        OllamaClient ollamaClient = new OllamaClient(config.getOllama());
+        
+        // Verifica a conexão com o Ollama antes de iniciar o bot
+        if (!ollamaClient.testConnection()) {
+            LOGGER.severe("🚨 Não foi possível conectar ao Ollama. O bot será iniciado, mas não funcionará.");
+            // Continua, mas o erro será tratado pelo TelegramBot/OllamaClient
+        } else {
+            LOGGER.info("🎉 Conexão com Ollama bem-sucedida!");
+        }
+
+        // 3. Cria o Bot (TelegramBot.java)
+        TelegramBot bot = new TelegramBot(config, ollamaClient);
+
+        // 4. Expõe /metrics e /ready (opcional), já durante o aquecimento
+        MetricsServer metrics = config.getMetrics().isEnabled()
+                ? new MetricsServer(config.getMetrics(), bot::writeMetrics, ollamaClient::writeMetrics)
+                : null;
+
+        // 5. Carrega os modelos antes de receber updates: a primeira pergunta não paga o carregamento
+        ModelWarmer warmer = config.getWarmUp().isEnabled()
+                ? new ModelWarmer(ollamaClient, ModelWarmer.chatModels(config), config.getWarmUp())
+                : null;
+        if (warmer != null) {
+            if (metrics != null) {
+                metrics.addSource(warmer::writeMetrics);
+                metrics.setReadiness(warmer::isReady);
+            }
+            warmer.warmUp().join();
+            warmer.startRefresh();
+        }
+
+        // 6. Passa a receber updates: webhook ou long polling
+        Runnable stopUpdates;
+        if (config.getTelegram().isWebhook()) {
+            WebhookServer webhook = new WebhookServer(config.getWebhook(), bot::onUpdateReceived);
+            try {
+                bot.registerWebhook(config.getWebhook());
+            } catch (TelegramApiException e) {
+                webhook.stop();
+                if (warmer != null) {
+                    warmer.shutdown();
+                }
+                if (metrics != null) {
+                    metrics.stop();
+                }
+                throw e;
+            }
+            if (metrics != null) {
+                metrics.addSource(webhook::writeMetrics);
+            }
+            stopUpdates = webhook::stop;
+        } else {
+            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+            BotSession session = botsApi.registerBot(bot);
+            stopUpdates = session::stop;
+        }
+
+        return () -> {
+            if (metrics != null) {
+                metrics.stop();
+            }
+            if (warmer != null) {
+                warmer.shutdown();
+            }
+            // Para de receber updates antes de esperar os que estão em andamento
+            stopUpdates.run();
+            bot.shutdown();
+            ollamaClient.shutdown();
+        };
+    }
+}
@@ -0,0 +1,511 @@
+package com.telegram;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolve localmente contas simples, sem chamar o Ollama.
+ *
+ * Entende aritmética, potências, raízes, fatorial, trigonometria, logaritmos e
+ * equações do 1º grau em x, escritas com símbolos ou em português ("raiz de 144",
+ * "quanto é 2 mais 3", "15% de 200", "resolva 3x + 6 = 0"). Se sobrar qualquer
+ * coisa que ele não entenda, devolve null e a pergunta segue para o modelo.
+ */
+public class MathEngine {
+
+    // Frases de abertura que não mudam a conta
+    private static final Pattern LEADING_PHRASE = Pattern.compile(
+        "^(?:(?:por favor|pf|me diga|me diz)\\s*,?\\s*)?"
+        + "(?:quanto (?:e|da|vale|fica|sao)|calcule|calcula|calcular|resolva|resolve|resolver|"
+        + "determine|encontre|ache|qual (?:e )?(?:o )?(?:valor|resultado) de|qual e|o resultado de|"
+        + "o valor de|valor de)\\b\\s*:?\\s*(?:(?:a|o)\\s+)?");
+
+    private static final Pattern PERCENT_OF = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*%\\s*(?:de|do|da|dos|das)\\s+");
+    private static final Pattern DECIMAL_COMMA = Pattern.compile("(\\d),(\\d)");
+    private static final Pattern TIMES_X = Pattern.compile("(?<=[\\d)\\s])x(?=[\\s\\d(])");
+
+    private static final String[][] WORDS = {
+        {"raiz quadrada de", " sqrt "}, {"raiz quadrada", " sqrt "}, {"raiz cubica de", " cbrt "},
+        {"raiz cubica", " cbrt "}, {"raiz de", " sqrt "}, {"raiz", " sqrt "},
+        {"multiplicado por", " * "}, {"dividido por", " / "}, {"divido por", " / "},
+        {"elevado ao", " ^ "}, {"elevado a", " ^ "}, {"elevado", " ^ "}, {"ao quadrado", " ^ 2 "}, {"ao cubo", " ^ 3 "},
+        {"logaritmo natural de", " ln "}, {"logaritmo de", " log "}, {"log de", " log "}, {"ln de", " ln "},
+        {"seno de", " sin "}, {"cosseno de", " cos "}, {"tangente de", " tan "},
+        {"seno", " sin "}, {"cosseno", " cos "}, {"tangente", " tan "}, {"sen", " sin "}, {"tg", " tan "},
+        {"modulo de", " abs "}, {"fatorial de", " fact "}, {"o dobro de", " 2 * "}, {"dobro de", " 2 * "},
+        {"o triplo de", " 3 * "}, {"triplo de", " 3 * "}, {"a metade de", " 0.5 * "}, {"metade de", " 0.5 * "},
+        {"mais", " + "}, {"menos", " - "}, {"vezes", " * "}, {"sobre", " / "},
+        {"graus", " ° "}, {"grau", " ° "}, {"radianos", " rad "},
+    };
+
+    /**
+     * Tenta responder a mensagem.
+     * @return a resposta pronta para o Telegram, ou null se a mensagem não for uma conta que ele resolva.
+     */
+    public String tryAnswer(String message) {
+        if (message == null || message.length() > 200) {
+            return null;
+        }
+        String expression = normalize(message);
+        if (expression.isEmpty()) {
+            return null;
+        }
+        try {
+            int equals = expression.indexOf('=');
+            if (equals >= 0 && expression.indexOf('=', equals + 1) < 0
+                    && !expression.substring(equals + 1).isBlank() && expression.contains("x")) {
+                return solveLinear(expression.substring(0, equals), expression.substring(equals + 1));
+            }
+            if (equals >= 0) {
+                // "2+2=" ou "2+2 = ?" é só uma conta
+                if (!expression.substring(equals + 1).replace("?", "").isBlank()) {
+                    return null;
+                }
+                expression = expression.substring(0, equals);
+            }
+            return evaluate(expression);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private String evaluate(String expression) {
+        Parser parser = new Parser(tokenize(expression));
+        Linear result = parser.parse();
+        if (!parser.sawOperation || result.a != 0) {
+            // Um número solto ("5") pode ser resposta a algo que o bot perguntou
+            return null;
+        }
+        if (parser.divisionByZero) {
+            return "🧮 " + display(parser.tokens) + "\n\nDivisão por zero não é definida.";
+        }
+        if (!Double.isFinite(result.b)) {
+            return null;
+        }
+        return "🧮 " + display(parser.tokens) + " = " + format(result.b);
+    }
+
+    private String solveLinear(String left, String right) {
+        Parser leftParser = new Parser(tokenize(left));
+        Parser rightParser = new Parser(tokenize(right));
+        Linear l = leftParser.parse();
+        Linear r = rightParser.parse();
+        if (leftParser.divisionByZero || rightParser.divisionByZero) {
+            return null;
+        }
+
+        // a·x + b = c·x + d  =>  (a - c)·x = d - b
+        double a = l.a - r.a;
+        double c = r.b - l.b;
+        String equation = "🧮 " + display(leftParser.tokens) + " = " + display(rightParser.tokens) + "\n\n";
+        if (!Double.isFinite(a) || !Double.isFinite(c)) {
+            return null;
+        }
+        if (isZero(a)) {
+            return equation + (isZero(c)
+                    ? "A igualdade vale para qualquer x: infinitas soluções."
+                    : "Os termos com x se cancelam e sobra " + format(0) + " = " + format(c) + ": não há solução.");
+        }
+        double x = c / a;
+        return equation
+                + format(a) + "x = " + format(c) + "\n"
+                + "x = " + format(c) + " ÷ " + format(a) + "\n"
+                + "*x = " + format(x) + "*";
+    }
+
+    static String normalize(String message) {
+        String text = Normalizer.normalize(message, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        text = text.toLowerCase(Locale.ROOT).trim()
+                .replace('×', '*').replace('·', '*').replace('÷', '/').replace('−', '-')
+                .replace("√", " sqrt ").replace("π", " pi ").replace("²", "^2").replace("³", "^3");
+        // "!" no fim só é fatorial depois de número ou parêntese
+        text = text.replaceAll("\\?+$", "").replaceAll("(?<![\\d)\\s])!+$", "").trim();
+        text = LEADING_PHRASE.matcher(text).replaceFirst("");
+        text = DECIMAL_COMMA.matcher(text).replaceAll("$1.$2");
+        text = PERCENT_OF.matcher(text).replaceAll("$1 / 100 * ");
+        text = text.replace("%", " / 100 ");
+        for (String[] word : WORDS) {
+            text = text.replaceAll("\\b" + Pattern.quote(word[0]) + "\\b", Matcher.quoteReplacement(word[1]));
+        }
+        if (text.indexOf('=') < 0) {
+            // Sem equação, "2 x 3" é multiplicação
+            text = TIMES_X.matcher(text).replaceAll("*");
+        }
+        return text.replaceAll("\\s+", " ").replaceAll("[.:]$", "").trim();
+    }
+
+    private static boolean isZero(double value) {
+        return Math.abs(value) < 1e-12;
+    }
+
+    /**
+     * Formata com até 10 casas decimais e vírgula decimal ("0,3" em vez de 0.30000000000000004).
+     * Abaixo de 1e-6 as casas decimais não bastam, então usa notação científica com 10 dígitos.
+     */
+    static String format(double value) {
+        if (value == 0) {
+            return "0";
+        }
+        if (Math.abs(value) < 1e-6) {
+            return new BigDecimal(value).round(new MathContext(10)).stripTrailingZeros().toString().replace('.', ',');
+        }
+        BigDecimal decimal = new BigDecimal(value).round(new MathContext(15));
+        decimal = decimal.setScale(Math.min(10, Math.max(0, decimal.scale())), java.math.RoundingMode.HALF_EVEN)
+                .stripTrailingZeros();
+        String text = decimal.abs().compareTo(new BigDecimal("1e15")) >= 0
+                ? decimal.toString() : decimal.toPlainString();
+        return text.replace('.', ',');
+    }
+
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < expression.length()
+                    && Character.isDigit(expression.charAt(i + 1)))) {
+                int start = i;
+                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(expression.substring(start, i));
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < expression.length() && Character.isLetterOrDigit(expression.charAt(i))) {
+                    i++;
+                }
+                tokens.addAll(splitWord(expression.substring(start, i)));
+            } else if ("+-*/^()!°".indexOf(c) >= 0) {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                throw new IllegalArgumentException("Caractere desconhecido: " + c);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Separa palavras coladas como "3x" já tratadas pelo tokenizer, "2pi" ou "xpi".
+     */
+    private static List<String> splitWord(String word) {
+        List<String> parts = new ArrayList<>();
+        String rest = word;
+        while (!rest.isEmpty()) {
+            String match = null;
+            for (String known : Parser.KNOWN_WORDS) {
+                if (rest.startsWith(known) && (match == null || known.length() > match.length())) {
+                    match = known;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Palavra desconhecida: " + rest);
+            }
+            parts.add(match);
+            rest = rest.substring(match.length());
+        }
+        return parts;
+    }
+
+    /**
+     * Monta a expressão para exibição, com espaços em volta dos operadores binários.
+     */
+    private static String display(List<String> tokens) {
+        StringBuilder out = new StringBuilder();
+        String previous = null;
+        for (String token : tokens) {
+            boolean binary = previous != null && isOperand(previous) && "+-*/".contains(token);
+            if (binary) {
+                out.append(' ').append(token.equals("*") ? "×" : token.equals("/") ? "÷" : token).append(' ');
+            } else if (token.equals("rad")) {
+                out.append(" rad");
+            } else {
+                boolean afterWordFunction = previous != null && Parser.FUNCTIONS.contains(previous)
+                        && !previous.equals("sqrt") && !previous.equals("cbrt");
+                if (afterWordFunction && !token.equals("(")) {
+                    out.append(' ');
+                }
+                out.append(displayToken(token));
+            }
+            previous = token;
+        }
+        return out.toString();
+    }
+
+    private static String displayToken(String token) {
+        switch (token) {
+            case "sqrt": return "√";
+            case "cbrt": return "∛";
+            case "sin":  return "sen";
+            case "tan":  return "tg";
+            case "fact": return "fatorial";
+            case "pi":   return "π";
+            default:
+                return Character.isDigit(token.charAt(0)) ? token.replace('.', ',') : token;
+        }
+    }
+
+    private static boolean isOperand(String token) {
+        return Character.isDigit(token.charAt(0)) || token.equals(")") || token.equals("!")
+                || token.equals("x") || token.equals("pi") || token.equals("°");
+    }
+
+    /**
+     * Valor da forma a·x + b. Para contas sem x, a = 0.
+     */
+    private static final class Linear {
+        final double a;
+        final double b;
+
+        Linear(double a, double b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        static Linear constant(double value) {
+            return new Linear(0, value);
+        }
+
+        boolean isConstant() {
+            return a == 0;
+        }
+    }
+
+    /**
+     * Parser descendente recursivo:
+     * expr := term (('+'|'-') term)*
+     * term := unary (('*'|'/') unary | unary implícito)*
+     * unary := ('-'|'+') unary | power
+     * power := postfix ('^' unary)?
+     * postfix := primary '!'*
+     * primary := número | x | pi | '(' expr ')' | função power
+     *
+     * Ângulos: com "°"/"graus" na mensagem os argumentos de sin/cos/tan são graus;
+     * com pi ou "rad", radianos; sem nenhum dos dois a conta fica para o modelo.
+     */
+    private static final class Parser {
+        static final List<String> FUNCTIONS = List.of("sqrt", "cbrt", "sin", "cos", "tan", "log", "ln", "abs", "fact");
+        static final List<String> KNOWN_WORDS = List.of(
+                "sqrt", "cbrt", "sin", "cos", "tan", "log", "ln", "abs", "fact", "pi", "x", "rad");
+
+        final List<String> tokens;
+        final List<String> input;
+        final boolean degrees;
+        final boolean radians;
+        int position;
+        boolean sawOperation;
+        boolean divisionByZero;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+            this.degrees = tokens.contains("°");
+            this.radians = tokens.contains("rad") || tokens.contains("pi");
+            List<String> filtered = new ArrayList<>(tokens);
+            filtered.removeIf(t -> t.equals("rad") || t.equals("°"));
+            this.input = filtered;
+        }
+
+        Linear parse() {
+            if (input.isEmpty()) {
+                throw new IllegalArgumentException("Expressão vazia");
+            }
+            Linear value = expression();
+            if (position != input.size()) {
+                throw new IllegalArgumentException("Sobrou: " + input.get(position));
+            }
+            return value;
+        }
+
+        private Linear expression() {
+            Linear value = term();
+            while (peek("+") || peek("-")) {
+                String op = next();
+                Linear right = term();
+                sawOperation = true;
+                value = op.equals("+")
+                        ? new Linear(value.a + right.a, value.b + right.b)
+                        : new Linear(value.a - right.a, value.b - right.b);
+            }
+            return value;
+        }
+
+        private Linear term() {
+            Linear value = unary();
+            while (true) {
+                if (peek("*") || peek("/")) {
+                    String op = next();
+                    Linear right = unary();
+                    sawOperation = true;
+                    value = op.equals("*") ? multiply(value, right) : divide(value, right);
+                } else if (startsImplicitFactor()) {
+                    // Multiplicação implícita: 2x, 3(4+1), 2pi, 2 sqrt 9
+                    Linear right = power();
+                    sawOperation = true;
+                    value = multiply(value, right);
+                } else {
+                    return value;
+                }
+            }
+        }
+
+        private Linear unary() {
+            if (peek("-")) {
+                next();
+                Linear value = unary();
+                return new Linear(-value.a, -value.b);
+            }
+            if (peek("+")) {
+                next();
+                return unary();
+            }
+            return power();
+        }
+
+        private Linear power() {
+            Linear base = postfix();
+            if (peek("^")) {
+                next();
+                Linear exponent = unary();
+                sawOperation = true;
+                requireConstant(base, exponent);
+                return Linear.constant(Math.pow(base.b, exponent.b));
+            }
+            return base;
+        }
+
+        private Linear postfix() {
+            Linear value = primary();
+            while (peek("!")) {
+                next();
+                requireConstant(value);
+                sawOperation = true;
+                value = Linear.constant(factorial(value.b));
+            }
+            return value;
+        }
+
+        private Linear primary() {
+            if (position >= input.size()) {
+                throw new IllegalArgumentException("Expressão incompleta");
+            }
+            String token = next();
+            if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.') {
+                return Linear.constant(Double.parseDouble(token));
+            }
+            switch (token) {
+                case "x":
+                    return new Linear(1, 0);
+                case "pi":
+                    return Linear.constant(Math.PI);
+                case "(": {
+                    Linear value = expression();
+                    expect(")");
+                    return value;
+                }
+                default:
+                    if (FUNCTIONS.contains(token)) {
+                        sawOperation = true;
+                        return applyFunction(token, power());
+                    }
+                    throw new IllegalArgumentException("Token inesperado: " + token);
+            }
+        }
+
+        private Linear applyFunction(String function, Linear argument) {
+            requireConstant(argument);
+            double v = argument.b;
+            switch (function) {
+                case "sqrt": return Linear.constant(Math.sqrt(v));
+                case "cbrt": return Linear.constant(Math.cbrt(v));
+                case "log":  return Linear.constant(Math.log10(v));
+                case "ln":   return Linear.constant(Math.log(v));
+                case "abs":  return Linear.constant(Math.abs(v));
+                case "fact": return Linear.constant(factorial(v));
+                default:
+                    // Sem "°" nem pi/rad (ou com os dois) não dá para saber se é grau ou radiano
+                    if (degrees == radians) {
+                        throw new IllegalArgumentException("Unidade do ângulo ambígua");
+                    }
+                    double angle = degrees ? Math.toRadians(v) : v;
+                    if (function.equals("tan") && Math.abs(Math.cos(angle)) < 1e-12) {
+                        throw new ArithmeticException("Tangente não definida");
+                    }
+                    double result = function.equals("sin") ? Math.sin(angle)
+                            : function.equals("cos") ? Math.cos(angle) : Math.tan(angle);
+                    // sin(180°) dá 1.2e-16 em double
+                    return Linear.constant(Math.abs(result) < 1e-12 ? 0 : result);
+            }
+        }
+
+        private Linear multiply(Linear left, Linear right) {
+            if (!left.isConstant() && !right.isConstant()) {
+                throw new IllegalArgumentException("Não é do 1º grau");
+            }
+            return left.isConstant()
+                    ? new Linear(left.b * right.a, left.b * right.b)
+                    : new Linear(left.a * right.b, left.b * right.b);
+        }
+
+        private Linear divide(Linear left, Linear right) {
+            requireConstant(right);
+            if (right.b == 0) {
+                divisionByZero = true;
+                return Linear.constant(Double.NaN);
+            }
+            return new Linear(left.a / right.b, left.b / right.b);
+        }
+
+        private double factorial(double n) {
+            if (n < 0 || n > 170 || n != Math.rint(n)) {
+                throw new IllegalArgumentException("Fatorial só de inteiros entre 0 e 170");
+            }
+            double result = 1;
+            for (int i = 2; i <= (int) n; i++) {
+                result *= i;
+            }
+            return result;
+        }
+
+        private void requireConstant(Linear... values) {
+            for (Linear value : values) {
+                if (!value.isConstant()) {
+                    throw new IllegalArgumentException("Não é do 1º grau");
+                }
+            }
+        }
+
+        /**
+         * Número logo após número ("3 5") não vira multiplicação: é erro de digitação.
+         */
+        private boolean startsImplicitFactor() {
+            if (position >= input.size()) {
+                return false;
+            }
+            String token = input.get(position);
+            return token.equals("(") || token.equals("x") || token.equals("pi") || FUNCTIONS.contains(token);
+        }
+
+        private boolean peek(String token) {
+            return position < input.size() && input.get(position).equals(token);
+        }
+
+        private String next() {
+            return input.get(position++);
+        }
+
+        private void expect(String token) {
+            if (!peek(token)) {
+                throw new IllegalArgumentException("Esperava " + token);
+            }
+            position++;
+        }
+    }
+}
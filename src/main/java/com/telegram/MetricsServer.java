@@ -0,0 +1,133 @@
+package com.telegram;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servidor HTTP embutido (o do próprio JDK) que expõe {@code GET /metrics} para o Prometheus.
+ *
+ * Não guarda nada: a cada scrape pede para cada {@link Source} escrever o estado
+ * atual (contadores e histogramas ficam nos próprios componentes).
+ *
+ * Também responde {@code GET /ready} (200 quando o bot está pronto, 503 enquanto os
+ * modelos aquecem), para o readiness probe do orquestrador.
+ */
+public class MetricsServer {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsServer.class.getName());
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Componente que sabe escrever as próprias métricas.
+     */
+    public interface Source {
+        void writeMetrics(MetricsWriter out);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<Source> sources;
+    private volatile BooleanSupplier readiness = () -> true;
+
+    public MetricsServer(Config.MetricsConfig config, Source... sources) {
+        this.sources = new CopyOnWriteArrayList<>(sources);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("❌ Não foi possível abrir a porta de métricas "
+                    + config.getHost() + ":" + config.getPort() + ": " + e.getMessage(), e);
+        }
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/metrics", this::handle);
+        server.createContext("/ready", this::ready);
+        server.setExecutor(executor);
+        server.start();
+
+        LOGGER.info("📊 Metrics available at http://" + config.getHost() + ":" + getPort() + "/metrics");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Inclui um componente criado depois do servidor (ex.: o webhook).
+     */
+    public void addSource(Source source) {
+        sources.add(source);
+    }
+
+    /**
+     * Define o que o /ready consulta; até aqui ele responde sempre 200.
+     */
+    public void setReadiness(BooleanSupplier readiness) {
+        this.readiness = readiness;
+    }
+
+    /**
+     * Texto atual das métricas (o mesmo que o /metrics devolve).
+     */
+    public String scrape() {
+        MetricsWriter out = new MetricsWriter();
+        for (Source source : sources) {
+            source.writeMetrics(out);
+        }
+        return out.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            try {
+                body = scrape().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to collect metrics", e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void ready(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            boolean ready = readiness.getAsBoolean();
+            byte[] body = (ready ? "ready\n" : "warming up\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(ready ? 200 : 503, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,86 @@
+package com.telegram;
+
+import java.util.Map;
+
+/**
+ * Monta a resposta do /metrics no formato de texto do Prometheus (versão 0.0.4).
+ * Todas as métricas recebem o prefixo {@code mathbot_}.
+ */
+public class MetricsWriter {
+
+    private static final String PREFIX = "mathbot_";
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    public MetricsWriter counter(String name, String help, double value) {
+        header(name, help, "counter");
+        sample(name, "", value);
+        return this;
+    }
+
+    public MetricsWriter gauge(String name, String help, double value) {
+        header(name, help, "gauge");
+        sample(name, "", value);
+        return this;
+    }
+
+    public MetricsWriter histogram(String name, String help, Histogram histogram) {
+        header(name, help, "histogram");
+        histogramSamples(name, "", histogram);
+        return this;
+    }
+
+    /**
+     * Uma série por valor do rótulo {@code label}, ex.: {@code route_requests_total{route="small"}}.
+     */
+    public MetricsWriter counters(String name, String help, String label, Map<String, ? extends Number> values) {
+        header(name, help, "counter");
+        values.forEach((value, count) -> sample(name, "{" + label(label, value) + "}", count.doubleValue()));
+        return this;
+    }
+
+    public MetricsWriter histograms(String name, String help, String label, Map<String, Histogram> values) {
+        header(name, help, "histogram");
+        values.forEach((value, histogram) -> histogramSamples(name, label(label, value), histogram));
+        return this;
+    }
+
+    private void histogramSamples(String name, String labels, Histogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            sample(name + "_bucket", "{" + prefix + "le=\"" + format(bounds[i]) + "\"}", counts[i]);
+        }
+        long count = counts[counts.length - 1];
+        sample(name + "_bucket", "{" + prefix + "le=\"+Inf\"}", count);
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        sample(name + "_sum", suffix, histogram.getSum());
+        sample(name + "_count", suffix, count);
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private void header(String name, String help, String type) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String labels, double value) {
+        out.append(PREFIX).append(name).append(labels).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
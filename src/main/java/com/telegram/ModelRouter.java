@@ -0,0 +1,166 @@
+package com.telegram;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Escolhe o modelo de cada pergunta: as simples vão para um modelo pequeno e
+ * rápido, as difíceis para um maior.
+ *
+ * A dificuldade é uma nota heurística de 0 a 100 ({@link #score}) calculada sem
+ * chamar modelo nenhum: tamanho da pergunta, palavras que pedem raciocínio
+ * ("demonstre", "por que", "integral"...), quantidade de símbolos matemáticos,
+ * várias perguntas juntas e tamanho da conversa. A pergunta vai para a primeira
+ * rota (na ordem do config) cujo {@code maxScore} cobre a nota; sem nenhuma, para
+ * a última.
+ */
+public class ModelRouter {
+
+    private static final Logger LOGGER = Logger.getLogger(ModelRouter.class.getName());
+
+    // Pedem explicação, prova ou conteúdo além de conta direta
+    private static final Pattern HARD_TERMS = Pattern.compile(
+            "\\b(?:demonstr\\w*|prov\\w*|justifi\\w*|por que|porque|explique|explica\\w*|passo a passo|"
+            + "compar\\w*|diferenca|integra\\w*|deriva\\w*|limite|matriz\\w*|determinante|vetor\\w*|"
+            + "probabilidade\\w*|estatistica|logaritm\\w*|trigonometr\\w*|sistema|inequac\\w*|teorema|"
+            + "serie|sequencia|progressao|otimiz\\w*|grafico|funcao|polinomi\\w*|combinatori\\w*|"
+            + "geometria analitica|numeros complexos|inducao)\\b");
+    private static final Pattern MATH_SYMBOL = Pattern.compile("[=<>^√∫∑()\\[\\]{}|/*]");
+
+    private final List<Route> routes;
+
+    public ModelRouter(Config.RoutingConfig config) {
+        List<Route> routes = new ArrayList<>();
+        for (Config.RouteConfig route : config.getRoutes()) {
+            routes.add(new Route(route.getName(), route.getModel(), route.getMaxScore()));
+        }
+        this.routes = Collections.unmodifiableList(routes);
+
+        LOGGER.info("✅ ModelRouter initialized - routes: " + this.routes);
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Rota da pergunta {@code message} feita depois de {@code history}.
+     */
+    public Route route(List<ChatMessage> history, String message) {
+        int score = score(history, message);
+        Route chosen = routes.get(routes.size() - 1);
+        for (Route route : routes) {
+            if (score <= route.maxScore) {
+                chosen = route;
+                break;
+            }
+        }
+        LOGGER.info("🧭 Routed to '" + chosen.name + "' (" + chosen.model + "), score " + score);
+        return chosen;
+    }
+
+    /**
+     * Nota de dificuldade de 0 (conta direta) a 100 (pede raciocínio longo).
+     */
+    static int score(List<ChatMessage> history, String message) {
+        String text = Normalizer.normalize(message, Normalizer.Form.NFD).replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        int score = 0;
+
+        // Perguntas longas costumam ter enunciado com várias partes
+        score += Math.min(30, text.length() / 10);
+
+        int hardTerms = 0;
+        Matcher matcher = HARD_TERMS.matcher(text);
+        while (matcher.find()) {
+            hardTerms++;
+        }
+        score += Math.min(40, hardTerms * 15);
+
+        int symbols = 0;
+        matcher = MATH_SYMBOL.matcher(text);
+        while (matcher.find()) {
+            symbols++;
+        }
+        score += Math.min(15, symbols);
+
+        if (text.chars().filter(c -> c == '?').count() > 1 || text.contains("\n")) {
+            score += 10;
+        }
+        // Continuação de conversa longa depende de mais contexto
+        if (history != null) {
+            score += Math.min(5, history.size() / 4);
+        }
+        return Math.min(100, score);
+    }
+
+    /**
+     * Conta a chamada na rota e mede o tempo até a resposta; devolve o próprio {@code call}.
+     */
+    public <T> CompletableFuture<T> track(Route route, CompletableFuture<T> call) {
+        long start = System.nanoTime();
+        route.requests.increment();
+        call.whenComplete((value, error) -> {
+            if (error == null) {
+                route.latency.observeNanos(System.nanoTime() - start);
+            } else if (!OllamaClient.isCancellation(error)) {
+                route.errors.increment();
+            }
+        });
+        return call;
+    }
+
+    public void writeMetrics(MetricsWriter out) {
+        Map<String, Long> requests = new LinkedHashMap<>();
+        Map<String, Long> errors = new LinkedHashMap<>();
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        for (Route route : routes) {
+            requests.put(route.name, route.requests.sum());
+            errors.put(route.name, route.errors.sum());
+            latencies.put(route.name, route.latency);
+        }
+        out.counters("route_requests_total", "Questions sent to each model route.", "route", requests)
+                .counters("route_errors_total", "Failed questions per model route.", "route", errors)
+                .histograms("route_response_seconds", "Time until the full answer, per model route.", "route",
+                        latencies);
+    }
+
+    /**
+     * Uma rota: nome (rótulo das métricas), modelo e nota máxima atendida.
+     */
+    public static final class Route {
+        private final String name;
+        private final String model;
+        private final int maxScore;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Histogram latency = Histogram.latency();
+
+        Route(String name, String model, int maxScore) {
+            this.name = name;
+            this.model = model;
+            this.maxScore = maxScore;
+        }
+
+        public String getName()   { return name; }
+        public String getModel()  { return model; }
+        public int getMaxScore()  { return maxScore; }
+        public long getRequests() { return requests.sum(); }
+        public long getErrors()   { return errors.sum(); }
+
+        @Override
+        public String toString() {
+            return name + "=" + model + (maxScore == Integer.MAX_VALUE ? "" : " (<= " + maxScore + ")");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.telegram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Mantém os modelos de chat carregados no Ollama, para que a primeira pergunta
+ * depois de um deploy ou de um tempo parado não pague o carregamento do modelo.
+ *
+ * No boot, {@link #warmUp} carrega cada modelo em todos os backends e já avalia o
+ * system prompt; o bot só fica pronto ({@link #isReady}) quando todos respondem.
+ * Depois, a cada {@code refreshIntervalSeconds}, os modelos que ficaram esse tempo
+ * sem perguntas recebem uma requisição vazia que renova o {@code keep_alive} (ou
+ * recarrega o modelo, se o Ollama reiniciou). Com tráfego, as próprias perguntas
+ * renovam o keep_alive e nada é enviado.
+ */
+public class ModelWarmer {
+
+    private static final Logger LOGGER = Logger.getLogger(ModelWarmer.class.getName());
+
+    private final OllamaClient ollamaClient;
+    private final List<String> models;
+    private final long timeoutSeconds;
+    private final long refreshIntervalSeconds;
+    private final LongAdder warmUps = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Histogram loadTime = Histogram.latency();
+    private volatile boolean ready;
+    private ScheduledExecutorService refresher;
+
+    public ModelWarmer(OllamaClient ollamaClient, List<String> models, Config.WarmUpConfig config) {
+        this.ollamaClient = ollamaClient;
+        this.models = List.copyOf(models);
+        this.timeoutSeconds = config.getTimeoutSeconds();
+        this.refreshIntervalSeconds = config.getRefreshIntervalSeconds();
+    }
+
+    /**
+     * Modelos que respondem ao usuário: o 'ollama.model' e os das rotas, sem repetir.
+     */
+    public static List<String> chatModels(Config config) {
+        Set<String> models = new LinkedHashSet<>();
+        models.add(config.getOllama().getModel());
+        if (config.getRouting().isEnabled()) {
+            for (Config.RouteConfig route : config.getRouting().getRoutes()) {
+                models.add(route.getModel());
+            }
+        }
+        return new ArrayList<>(models);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Carrega todos os modelos com o system prompt. Completa (sem erro) quando
+     * terminar, falhar ou passar de {@code timeoutSeconds}; se não deu certo, a
+     * próxima rodada do refresh tenta de novo.
+     */
+    public CompletableFuture<Void> warmUp() {
+        LOGGER.info("🔥 Warming up " + models + "...");
+        List<CompletableFuture<Long>> loads = new ArrayList<>();
+        for (String model : models) {
+            loads.add(load(model, true));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]))
+                .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .handle((done, error) -> {
+                    if (error == null) {
+                        ready = true;
+                        LOGGER.info("✅ Models warm, bot ready");
+                    } else if (error instanceof TimeoutException) {
+                        LOGGER.warning("⏳ Warm-up took more than " + timeoutSeconds + "s, starting anyway");
+                    } else {
+                        LOGGER.warning("⚠️ Warm-up failed, will retry in " + refreshIntervalSeconds + "s");
+                    }
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Long> load(String model, boolean withPrompt) {
+        long start = System.nanoTime();
+        return ollamaClient.warmUpAsync(model, withPrompt).whenComplete((loadNanos, error) -> {
+            if (error != null) {
+                failures.increment();
+                LOGGER.warning("❌ Could not load " + model + ": " + OllamaClient.describeError(error));
+                return;
+            }
+            warmUps.increment();
+            loadTime.observeNanos(System.nanoTime() - start);
+            if (withPrompt) {
+                LOGGER.info("🔥 " + model + " warm in " + (System.nanoTime() - start) / 1_000_000 + "ms (load "
+                        + loadNanos / 1_000_000 + "ms)");
+            }
+        });
+    }
+
+    /**
+     * Inicia a renovação periódica dos modelos parados.
+     */
+    public synchronized void startRefresh() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ollama-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void refresh() {
+        if (!ready) {
+            warmUp();
+            return;
+        }
+        long idleLimit = TimeUnit.SECONDS.toNanos(refreshIntervalSeconds);
+        for (String model : models) {
+            // Perguntas recentes já renovaram o keep_alive deste modelo
+            if (ollamaClient.getIdleNanos(model) >= idleLimit) {
+                LOGGER.fine("🔥 Refreshing idle model " + model);
+                load(model, false);
+            }
+        }
+    }
+
+    public void writeMetrics(MetricsWriter out) {
+        out.gauge("model_ready", "1 once the chat models are loaded in Ollama.", ready ? 1 : 0)
+                .counter("model_warmups_total", "Model loads and keep-alive refreshes sent to Ollama.", warmUps.sum())
+                .counter("model_warmup_failures_total", "Model loads that failed.", failures.sum())
+                .histogram("model_warmup_seconds", "Time of each model load or refresh.", loadTime);
+    }
+
+    public synchronized void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+}
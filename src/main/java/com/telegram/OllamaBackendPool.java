@@ -0,0 +1,180 @@
+package com.telegram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Conjunto de servidores Ollama que atendem o mesmo modelo.
+ *
+ * Cada requisição vai para o backend saudável com menos requisições em andamento
+ * (least outstanding requests). Um backend que falha na conexão é retirado da
+ * rotação na hora e só volta quando o health check em /api/tags responder 200.
+ */
+public class OllamaBackendPool {
+
+    private static final Logger LOGGER = Logger.getLogger(OllamaBackendPool.class.getName());
+
+    private final List<Backend> backends;
+    private final HttpClient httpClient;
+    private final AtomicInteger tieBreaker = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+
+    public OllamaBackendPool(List<String> baseUrls, HttpClient httpClient) {
+        if (baseUrls == null || baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("Pelo menos um backend do Ollama é necessário");
+        }
+        List<Backend> list = new ArrayList<>();
+        for (String url : baseUrls) {
+            list.add(new Backend(url.endsWith("/") ? url.substring(0, url.length() - 1) : url));
+        }
+        this.backends = Collections.unmodifiableList(list);
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Inicia os health checks periódicos.
+     */
+    public synchronized void startHealthChecks(long intervalSeconds) {
+        if (healthChecker != null || intervalSeconds <= 0) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ollama-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkAllAsync, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        LOGGER.info("🩺 Health checks every " + intervalSeconds + "s for " + backends.size() + " Ollama backend(s)");
+    }
+
+    public synchronized void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * Escolhe o backend saudável com menos requisições em andamento, ignorando os
+     * que já falharam nesta requisição. Se nenhum estiver saudável, tenta mesmo
+     * assim um dos que ainda não foram tentados.
+     * @return o backend escolhido, ou null se todos já foram tentados.
+     */
+    public Backend select(Collection<Backend> alreadyTried) {
+        Backend best = pickLeastOutstanding(alreadyTried, true);
+        if (best == null) {
+            best = pickLeastOutstanding(alreadyTried, false);
+        }
+        return best;
+    }
+
+    /**
+     * Retira o backend da rotação até o próximo health check bem-sucedido.
+     */
+    public void markFailed(Backend backend, Throwable cause) {
+        if (backend.healthy) {
+            backend.healthy = false;
+            LOGGER.warning("🚫 Ollama backend " + backend.baseUrl + " ejected: " + cause);
+        }
+    }
+
+    /**
+     * Roda o health check em todos os backends e espera o resultado.
+     * @return true se pelo menos um backend respondeu.
+     */
+    public boolean checkAll() {
+        return checkAllAsync().join();
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    public int size() {
+        return backends.size();
+    }
+
+    private CompletableFuture<Boolean> checkAllAsync() {
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        for (Backend backend : backends) {
+            checks.add(check(backend));
+        }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> checks.stream().anyMatch(CompletableFuture::join));
+    }
+
+    private CompletableFuture<Boolean> check(Backend backend) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl + "/api/tags"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    boolean ok = error == null && response.statusCode() == 200;
+                    if (ok && !backend.healthy) {
+                        LOGGER.info("✅ Ollama backend " + backend.baseUrl + " is back");
+                    } else if (!ok && backend.healthy) {
+                        LOGGER.warning("🚫 Ollama backend " + backend.baseUrl + " failed health check: "
+                                + (error != null ? error : "HTTP " + response.statusCode()));
+                    }
+                    backend.healthy = ok;
+                    return ok;
+                });
+    }
+
+    private Backend pickLeastOutstanding(Collection<Backend> excluded, boolean healthyOnly) {
+        // Começa de uma posição rotativa para desempatar sem sempre favorecer o primeiro
+        int start = Math.floorMod(tieBreaker.getAndIncrement(), backends.size());
+        Backend best = null;
+        for (int i = 0; i < backends.size(); i++) {
+            Backend candidate = backends.get((start + i) % backends.size());
+            if (excluded.contains(candidate) || (healthyOnly && !candidate.healthy)) {
+                continue;
+            }
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Um servidor Ollama e seu contador de requisições em andamento.
+     */
+    public static final class Backend {
+        private final String baseUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean healthy = true;
+
+        Backend(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getBaseUrl()  { return baseUrl; }
+        public int getOutstanding() { return outstanding.get(); }
+        public boolean isHealthy()  { return healthy; }
+
+        void acquire() { outstanding.incrementAndGet(); }
+        void release() { outstanding.decrementAndGet(); }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
@@ -1,138 +1,514 @@
 package com.telegram;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 public class OllamaClient {
-    
+
     private static final Logger LOGGER = Logger.getLogger(OllamaClient.class.getName());
-    
-    private final String baseUrl;
+
     private final String modelName;
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final String systemPrompt;
+    private final OllamaCodec codec;
+    private final OllamaBackendPool pool;
+    private final RequestLimiter limiter;
+    private final Histogram timeToFirstToken = Histogram.latency();
+    private final Histogram generationTime = Histogram.latency();
+    private final Histogram promptEvalRate = Histogram.rate();
+    private final Histogram evalRate = Histogram.rate();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final Duration generationTimeout;
+    // Último uso de cada modelo (System.nanoTime), para o ModelWarmer saber quem está parado
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
 
     public OllamaClient(String baseUrl, String modelName) {
-        this.baseUrl = baseUrl;
-        this.modelName = modelName;
+        this(singleBackend(baseUrl, modelName));
+    }
+
+    public OllamaClient(Config.OllamaConfig config) {
+        this.modelName = config.getModel();
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
         this.objectMapper = new ObjectMapper();
-        
-        this.systemPrompt = 
+        this.pool = new OllamaBackendPool(config.getBackendUrls(), httpClient);
+        // O limite de concorrência é por backend: mais servidores, mais vagas
+        int maxConcurrent = config.getMaxConcurrentRequests() * pool.size();
+        this.limiter = new RequestLimiter(maxConcurrent, config.getMaxQueuedRequests());
+        this.generationTimeout = Duration.ofSeconds(config.getGenerationTimeoutSeconds());
+        pool.startHealthChecks(config.getHealthCheckIntervalSeconds());
+
+        this.systemPrompt =
             "Você é um Tutor de Matemática Inteligente para o Telegram. " +
             "Responda em PT-BR\n" +
             "Sem LaTeX\n" +
             "Seja conciso e direto nas respostas, sem dar muitos outros contextos.";
-        
-        LOGGER.info("✅ OllamaClient initialized - URL: " + baseUrl + ", Model: " + modelName);
+        this.codec = new OllamaCodec(systemPrompt, config.getKeepAlive());
+
+        LOGGER.info("✅ OllamaClient initialized - URLs: " + config.getBackendUrls() + ", Model: " + modelName
+                + ", maxConcurrent: " + maxConcurrent + ", maxQueued: " + config.getMaxQueuedRequests());
+    }
+
+    private static Config.OllamaConfig singleBackend(String baseUrl, String modelName) {
+        Config.OllamaConfig config = new Config.OllamaConfig();
+        config.setBaseUrl(baseUrl);
+        config.setModel(modelName);
+        return config;
+    }
+
+    /**
+     * Blocking version of {@link #chatAsync}. Never throws: failures come back
+     * as a user-facing error message.
+     */
+    public String chat(List<ChatMessage> history, String userMessage) {
+        return await(chatAsync(history, userMessage));
+    }
+
+    /**
+     * Blocking version of {@link #chatStreamAsync}. Never throws: failures come
+     * back as a user-facing error message.
+     */
+    public String chatStream(List<ChatMessage> history, String userMessage, Consumer<String> onPartial) {
+        return await(chatStreamAsync(history, userMessage, onPartial));
+    }
+
+    /**
+     * Sends the conversation to /api/chat without blocking the caller.
+     * The request waits for a free slot in the {@link RequestLimiter}; if the
+     * queue is full the future fails with {@link OllamaOverloadedException}.
+     * Cancelling the returned future aborts the HTTP exchange (Ollama stops
+     * generating) and frees the slot right away.
+     */
+    public CompletableFuture<String> chatAsync(List<ChatMessage> history, String userMessage) {
+        return chatAsync(modelName, history, userMessage);
+    }
+
+    /**
+     * Same as {@link #chatAsync(List, String)}, answered by {@code model} instead of
+     * the configured one (see {@link ModelRouter}).
+     */
+    public CompletableFuture<String> chatAsync(String model, List<ChatMessage> history, String userMessage) {
+        return chatAsync(model, null, history, userMessage);
     }
 
-    public String chat(List<Map<String, String>> history, String userMessage) {
+    /**
+     * Same as {@link #chatAsync(String, List, String)}, queued fairly as {@code flow}
+     * (usually the chat) when every slot is busy; {@code flow} may be null.
+     */
+    public CompletableFuture<String> chatAsync(String model, RequestLimiter.Flow flow, List<ChatMessage> history,
+                                               String userMessage) {
+        HttpRequest.BodyPublisher body;
         try {
-            ArrayNode messages = objectMapper.createArrayNode();
-            
-            // Add system prompt
-            ObjectNode systemMsg = objectMapper.createObjectNode();
-            systemMsg.put("role", "system");
-            systemMsg.put("content", systemPrompt);
-            messages.add(systemMsg);
-            
-            // Add history
-            for (Map<String, String> msg : history) {
-                ObjectNode historyMsg = objectMapper.createObjectNode();
-                historyMsg.put("role", msg.get("role"));
-                historyMsg.put("content", msg.get("content"));
-                messages.add(historyMsg);
-            }
-            
-            // Add current message
-            ObjectNode userMsg = objectMapper.createObjectNode();
-            userMsg.put("role", "user");
-            userMsg.put("content", userMessage);
-            messages.add(userMsg);
-            
-            // Build request
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            requestBody.put("model", modelName);
-            requestBody.set("messages", messages);
-            requestBody.put("stream", false);
-            
-            String jsonBody = objectMapper.writeValueAsString(requestBody);
+            body = codec.chatBody(model, history, userMessage, false);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        lastUsed.put(model, System.nanoTime());
+
+        return contentOf(limiter.submit(flow, () -> {
             LOGGER.info("📤 Sending request to Ollama...");
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/api/chat"))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(120))
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(
-                request, 
-                HttpResponse.BodyHandlers.ofString()
-            );
-            
-            LOGGER.info("📥 Response status: " + response.statusCode());
-            
-            if (response.statusCode() == 200) {
-                var jsonResponse = objectMapper.readTree(response.body());
-                String answer = jsonResponse.get("message").get("content").asText();
-                LOGGER.info("✅ Got response from Ollama");
-                return answer;
-            } else {
-                String error = "Erro do Ollama: " + response.statusCode();
-                LOGGER.severe(error);
-                return error;
+            return exchange(body, null);
+        }));
+    }
+
+    /**
+     * Same as {@link #chatAsync}, but with {@code "stream": true}: Ollama answers with one
+     * JSON object per line (NDJSON) and each chunk is handed to {@code onPartial}
+     * as soon as it arrives.
+     *
+     * @param onPartial receives each new piece of text (not the accumulated answer)
+     * @return a future with the complete answer
+     */
+    public CompletableFuture<String> chatStreamAsync(List<ChatMessage> history, String userMessage,
+                                                     Consumer<String> onPartial) {
+        return chatStreamAsync(modelName, history, userMessage, onPartial);
+    }
+
+    /**
+     * Same as {@link #chatStreamAsync(List, String, Consumer)}, answered by {@code model}.
+     */
+    public CompletableFuture<String> chatStreamAsync(String model, List<ChatMessage> history, String userMessage,
+                                                     Consumer<String> onPartial) {
+        return chatStreamAsync(model, null, history, userMessage, onPartial);
+    }
+
+    /**
+     * Same as {@link #chatStreamAsync(String, List, String, Consumer)}, queued fairly as {@code flow}.
+     */
+    public CompletableFuture<String> chatStreamAsync(String model, RequestLimiter.Flow flow, List<ChatMessage> history,
+                                                     String userMessage, Consumer<String> onPartial) {
+        HttpRequest.BodyPublisher body;
+        try {
+            body = codec.chatBody(model, history, userMessage, true);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        lastUsed.put(model, System.nanoTime());
+
+        return contentOf(limiter.submit(flow, () -> {
+            LOGGER.info("📤 Sending streaming request to Ollama...");
+            return exchange(body, onPartial);
+        }));
+    }
+
+    /**
+     * One-off request to /api/chat with its own model and system prompt, without the
+     * tutor prompt or any chat history (used for background work such as summaries).
+     * Goes through the {@link RequestLimiter} like a normal chat.
+     */
+    public CompletableFuture<String> completeAsync(String model, String instructions, String prompt) {
+        HttpRequest.BodyPublisher body;
+        try {
+            body = codec.completionBody(model, instructions, prompt);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        lastUsed.put(model, System.nanoTime());
+
+        return contentOf(limiter.submit(() -> exchange(body, null)));
+    }
+
+    /**
+     * Loads {@code model} on every healthy backend (see {@link OllamaCodec#warmUpBody}).
+     * Skips the {@link RequestLimiter} and the chat metrics: it runs at boot, before
+     * any traffic, or when the model has been idle.
+     *
+     * @return a future with the longest load time reported by Ollama, in nanoseconds
+     */
+    public CompletableFuture<Long> warmUpAsync(String model, boolean withPrompt) {
+        List<CompletableFuture<Long>> loads = new ArrayList<>();
+        for (OllamaBackendPool.Backend backend : pool.getBackends()) {
+            if (!backend.isHealthy()) {
+                continue;
             }
-            
-        } catch (java.net.ConnectException e) {
-            String error = "❌ Não foi possível conectar ao Ollama.\nVerifique se está rodando: ollama serve";
-            LOGGER.log(Level.SEVERE, error, e);
-            return error;
-            
+            OllamaCodec.ChatDecoder decoder = codec.newDecoder(null);
+            loads.add(httpClient.sendAsync(buildPostRequest(backend, "/api/chat", codec.warmUpBody(model, withPrompt)),
+                            info -> HttpResponse.BodySubscribers.fromSubscriber(decoder))
+                    .thenCompose(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new OllamaException("Erro do Ollama ao carregar " + model + " em "
+                                    + backend.getBaseUrl() + ": " + response.statusCode());
+                        }
+                        return decoder.result();
+                    })
+                    .thenApply(OllamaCodec.ChatResult::getLoadDuration));
+        }
+        if (loads.isEmpty()) {
+            return CompletableFuture.failedFuture(new ConnectException("Nenhum backend do Ollama disponível"));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]))
+                .thenApply(done -> loads.stream().mapToLong(CompletableFuture::join).max().orElse(0));
+    }
+
+    /**
+     * Nanoseconds since the last chat request to {@code model}, or {@link Long#MAX_VALUE} if never used.
+     */
+    public long getIdleNanos(String model) {
+        Long last = lastUsed.get(model);
+        return last == null ? Long.MAX_VALUE : System.nanoTime() - last;
+    }
+
+    /**
+     * Computes the embedding of {@code text} with /api/embed. Embedding calls are
+     * short, so they skip the chat {@link RequestLimiter} but still use the backend pool.
+     */
+    public CompletableFuture<float[]> embedAsync(String model, String text) {
+        String jsonBody;
+        try {
+            ObjectNode requestBody = objectMapper.createObjectNode();
+            requestBody.put("model", model);
+            requestBody.put("input", text);
+            jsonBody = objectMapper.writeValueAsString(requestBody);
         } catch (Exception e) {
-            String error = "❌ Erro: " + e.getMessage();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return sendWithFailover("/api/embed", HttpRequest.BodyPublishers.ofString(jsonBody),
+                HttpResponse.BodyHandlers.ofString(), new ArrayList<>(), null)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new OllamaException("Erro do Ollama (embed): " + response.statusCode());
+                    }
+                    try {
+                        JsonNode vector = objectMapper.readTree(response.body()).path("embeddings").path(0);
+                        if (!vector.isArray() || vector.size() == 0) {
+                            throw new OllamaException("❌ Resposta de embedding vazia");
+                        }
+                        float[] embedding = new float[vector.size()];
+                        for (int i = 0; i < embedding.length; i++) {
+                            embedding[i] = (float) vector.get(i).asDouble();
+                        }
+                        return embedding;
+                    } catch (OllamaException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new OllamaException("❌ Resposta inválida do Ollama: " + e.getMessage(), e);
+                    }
+                });
+    }
+
+    /**
+     * True when the call was cancelled on purpose (superseded or {@code /clear}).
+     */
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+
+    /**
+     * Converts any failure from the async API into the message shown to the user.
+     */
+    public static String describeError(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof OllamaException) {
+            return cause.getMessage();
+        }
+        if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            return "⏱️ O modelo demorou demais para responder. Tente de novo ou faça uma pergunta mais curta.";
+        }
+        if (cause instanceof java.net.ConnectException) {
+            return "❌ Não foi possível conectar ao Ollama.\nVerifique se está rodando: ollama serve";
+        }
+        return "❌ Erro: " + cause.getMessage();
+    }
+
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (Exception e) {
+            String error = describeError(e);
             LOGGER.log(Level.SEVERE, error, e);
             return error;
         }
     }
 
+    /**
+     * Sends a /api/chat request and decodes the answer while the body arrives.
+     */
+    private CompletableFuture<OllamaCodec.ChatResult> exchange(HttpRequest.BodyPublisher body, Consumer<String> onPartial) {
+        OllamaCodec.ChatDecoder decoder = codec.newDecoder(onPartial);
+        long start = System.nanoTime();
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicReference<CompletableFuture<?>> attempt = new AtomicReference<>();
+        Consumer<CompletableFuture<?>> track = http -> {
+            attempt.set(http);
+            if (aborted.get()) {
+                http.cancel(true);
+            }
+        };
+        CompletableFuture<OllamaCodec.ChatResult> result = sendWithFailover("/api/chat", body,
+                info -> HttpResponse.BodySubscribers.fromSubscriber(decoder), new ArrayList<>(), track)
+                .thenCompose(response -> {
+                    LOGGER.info("📥 Response status: " + response.statusCode());
+                    if (response.statusCode() != 200) {
+                        throw new OllamaException("Erro do Ollama: " + response.statusCode());
+                    }
+                    return decoder.result();
+                })
+                .thenApply(chat -> {
+                    LOGGER.info("✅ Got response from Ollama" + describeTimings(chat));
+                    return chat;
+                })
+                .orTimeout(generationTimeout.toSeconds(), TimeUnit.SECONDS);
+        result.whenComplete((chat, error) -> {
+            if (result.isCancelled() || unwrap(error) instanceof TimeoutException) {
+                // Fecha a conexão: o Ollama para de gerar e o backend fica livre na hora
+                aborted.set(true);
+                decoder.cancel();
+                CompletableFuture<?> http = attempt.get();
+                if (http != null) {
+                    http.cancel(true);
+                }
+            }
+            record(start, decoder, chat, error);
+        });
+        return result;
+    }
+
+    /**
+     * Answer text of a chat future; cancelling the returned future cancels {@code chat} too.
+     */
+    private static CompletableFuture<String> contentOf(CompletableFuture<OllamaCodec.ChatResult> chat) {
+        CompletableFuture<String> content = chat.thenApply(OllamaCodec.ChatResult::getContent);
+        content.whenComplete((value, error) -> {
+            if (content.isCancelled()) {
+                chat.cancel(true);
+            }
+        });
+        return content;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void record(long start, OllamaCodec.ChatDecoder decoder, OllamaCodec.ChatResult result, Throwable error) {
+        if (error != null) {
+            if (isCancellation(error)) {
+                LOGGER.info("🛑 Ollama request cancelled after " + (System.nanoTime() - start) / 1_000_000 + "ms");
+                cancelled.increment();
+                return;
+            }
+            if (unwrap(error) instanceof TimeoutException) {
+                LOGGER.warning("⏱️ Ollama request aborted after " + generationTimeout.toSeconds() + "s");
+                timeouts.increment();
+            }
+            errors.increment();
+            return;
+        }
+        generationTime.observeNanos(System.nanoTime() - start);
+        if (decoder.getFirstContentAt() != 0) {
+            timeToFirstToken.observeNanos(decoder.getFirstContentAt() - start);
+        }
+        if (result.getPromptEvalTokensPerSecond() > 0) {
+            promptEvalRate.observe(result.getPromptEvalTokensPerSecond());
+        }
+        if (result.getEvalTokensPerSecond() > 0) {
+            evalRate.observe(result.getEvalTokensPerSecond());
+        }
+    }
+
+    /**
+     * /api/chat latencies and token rates, limiter occupancy and errors.
+     */
+    public void writeMetrics(MetricsWriter out) {
+        out.histogram("ollama_time_to_first_token_seconds",
+                        "Time from sending the request to the first answer text.", timeToFirstToken)
+                .histogram("ollama_generation_seconds", "Total time of a /api/chat request.", generationTime)
+                .histogram("ollama_prompt_eval_tokens_per_second",
+                        "Prompt processing speed reported by Ollama.", promptEvalRate)
+                .histogram("ollama_eval_tokens_per_second", "Generation speed reported by Ollama.", evalRate)
+                .counter("ollama_errors_total", "Failed /api/chat requests.", errors.sum())
+                .counter("ollama_timeouts_total", "/api/chat requests aborted by the generation timeout.", timeouts.sum())
+                .counter("ollama_cancelled_total", "/api/chat requests cancelled before finishing.", cancelled.sum())
+                .gauge("ollama_requests_in_flight", "Requests running on Ollama.", limiter.getRunning())
+                .gauge("ollama_requests_queued", "Requests waiting for a free Ollama slot.", limiter.getQueued());
+    }
+
+    private static String describeTimings(OllamaCodec.ChatResult result) {
+        if (result.getEvalCount() == 0) {
+            return "";
+        }
+        return String.format(Locale.ROOT, " - prompt: %d tokens in %dms, answer: %d tokens at %.1f tok/s",
+                result.getPromptEvalCount(), result.getPromptEvalDuration() / 1_000_000,
+                result.getEvalCount(), result.getEvalTokensPerSecond());
+    }
+
+    /**
+     * Sends the request to the least loaded backend. If the connection fails the
+     * backend is ejected and the request is retried on another one; failures after
+     * the connection is established are not retried.
+     *
+     * @param onAttempt if not null, receives the {@code sendAsync} future of every attempt
+     *                  (cancelling it aborts the exchange)
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendWithFailover(String path, HttpRequest.BodyPublisher body,
+                                                                    HttpResponse.BodyHandler<T> handler,
+                                                                    List<OllamaBackendPool.Backend> tried,
+                                                                    Consumer<CompletableFuture<?>> onAttempt) {
+        OllamaBackendPool.Backend backend = pool.select(tried);
+        if (backend == null) {
+            return CompletableFuture.failedFuture(new ConnectException("Nenhum backend do Ollama disponível"));
+        }
+        tried.add(backend);
+        backend.acquire();
+
+        CompletableFuture<HttpResponse<T>> attempt = httpClient.sendAsync(buildPostRequest(backend, path, body), handler);
+        if (onAttempt != null) {
+            onAttempt.accept(attempt);
+        }
+        return attempt
+                .handle((response, error) -> {
+                    backend.release();
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                        pool.markFailed(backend, cause);
+                        if (tried.size() < pool.size()) {
+                            LOGGER.warning("🔁 Retrying on another Ollama backend...");
+                        }
+                        return sendWithFailover(path, body, handler, tried, onAttempt);
+                    }
+                    return CompletableFuture.<HttpResponse<T>>failedFuture(cause);
+                })
+                .thenCompose(future -> future);
+    }
+
+    private HttpRequest buildPostRequest(OllamaBackendPool.Backend backend, String path, HttpRequest.BodyPublisher body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(backend.getBaseUrl() + path))
+                .header("Content-Type", "application/json")
+                .timeout(generationTimeout)
+                .POST(body)
+                .build();
+    }
+
+    /**
+     * Checks /api/tags on every backend.
+     * @return true if at least one backend is reachable
+     */
     public boolean testConnection() {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/api/tags"))
-                    .timeout(Duration.ofSeconds(5))
-                    .GET()
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(
-                request,
-                HttpResponse.BodyHandlers.ofString()
-            );
-            
-            return response.statusCode() == 200;
-            
+            return pool.checkAll();
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Cannot connect to Ollama", e);
             return false;
         }
     }
 
+    public void shutdown() {
+        pool.shutdown();
+    }
+
     public String getModelName() {
         return modelName;
     }
-}
\ No newline at end of file
+
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    public RequestLimiter getLimiter() {
+        return limiter;
+    }
+
+    public OllamaBackendPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,479 @@
+package com.telegram;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Streaming JSON codec for /api/chat.
+ *
+ * Requests are written with a {@link JsonGenerator} straight into the body buffer;
+ * field names, roles and the system-prompt message are pre-encoded UTF-8. Responses
+ * (a single object or NDJSON when streaming) are read with Jackson's non-blocking
+ * parser as the bytes arrive, picking {@code message.content}, {@code done}, {@code error}
+ * and the timing fields without building a tree or a String of the whole body.
+ */
+public class OllamaCodec {
+
+    private static final SerializableString MODEL = new SerializedString("model");
+    private static final SerializableString MESSAGES = new SerializedString("messages");
+    private static final SerializableString ROLE = new SerializedString("role");
+    private static final SerializableString CONTENT = new SerializedString("content");
+    private static final SerializableString STREAM = new SerializedString("stream");
+    private static final SerializableString KEEP_ALIVE = new SerializedString("keep_alive");
+    private static final SerializableString OPTIONS = new SerializedString("options");
+    private static final SerializableString NUM_PREDICT = new SerializedString("num_predict");
+    private static final SerializableString[] ROLES = new SerializableString[ChatMessage.Role.values().length];
+
+    static {
+        for (ChatMessage.Role role : ChatMessage.Role.values()) {
+            ROLES[role.ordinal()] = new SerializedString(role.wireName());
+        }
+    }
+
+    private final JsonFactory factory = new JsonFactory();
+    private final SerializableString systemMessage;
+    private final String keepAlive;
+    // keep_alive numérico (segundos), lido uma vez; null se for duração ("30m") ou ausente
+    private final Long keepAliveSeconds;
+
+    public OllamaCodec(String systemPrompt) {
+        this(systemPrompt, null);
+    }
+
+    /**
+     * @param keepAlive value sent as {@code keep_alive} on every request ("30m", "-1"...),
+     *                  or null for Ollama's default
+     */
+    public OllamaCodec(String systemPrompt, String keepAlive) {
+        this.systemMessage = encodeMessage(ChatMessage.Role.SYSTEM, systemPrompt);
+        this.keepAlive = keepAlive;
+        // Ollama lê número como segundos (-1 = para sempre) e texto como duração ("30m")
+        this.keepAliveSeconds = keepAlive != null && keepAlive.matches("-?\\d+") ? Long.valueOf(keepAlive) : null;
+    }
+
+    /**
+     * Request body for /api/chat with the tutor system prompt.
+     */
+    public HttpRequest.BodyPublisher chatBody(String model, List<ChatMessage> history, String userMessage, boolean stream) {
+        return publish(out -> writeChat(out, model, systemMessage, history, userMessage, stream),
+                estimateSize(history, userMessage));
+    }
+
+    /**
+     * Request body for a one-off call with its own instructions instead of the tutor prompt.
+     */
+    public HttpRequest.BodyPublisher completionBody(String model, String instructions, String prompt) {
+        SerializableString system = encodeMessage(ChatMessage.Role.SYSTEM, instructions);
+        return publish(out -> writeChat(out, model, system, List.of(), prompt, false),
+                instructions.length() + prompt.length() + 128);
+    }
+
+    /**
+     * Request body that only loads {@code model} into memory. With {@code withPrompt}
+     * the tutor system prompt is evaluated too (one token is generated), so the
+     * prompt prefix is already cached for the first real question; without it the
+     * messages are empty and Ollama just loads the model or renews its keep_alive.
+     */
+    public HttpRequest.BodyPublisher warmUpBody(String model, boolean withPrompt) {
+        return publish(out -> {
+            try (JsonGenerator generator = factory.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeFieldName(MODEL);
+                generator.writeString(model);
+                generator.writeFieldName(MESSAGES);
+                generator.writeStartArray();
+                if (withPrompt) {
+                    generator.writeRawValue(systemMessage);
+                }
+                generator.writeEndArray();
+                generator.writeFieldName(STREAM);
+                generator.writeBoolean(false);
+                writeKeepAlive(generator);
+                generator.writeFieldName(OPTIONS);
+                generator.writeStartObject();
+                generator.writeFieldName(NUM_PREDICT);
+                generator.writeNumber(1);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+        }, systemMessage.charLength() + 128);
+    }
+
+    /**
+     * Writes the chat request JSON to {@code out}.
+     */
+    public void writeChat(OutputStream out, String model, List<ChatMessage> history, String userMessage,
+                          boolean stream) throws IOException {
+        writeChat(out, model, systemMessage, history, userMessage, stream);
+    }
+
+    /**
+     * New decoder for one response. {@code onPartial} (may be null) receives each
+     * new piece of text as it arrives; the full answer is only built at the end.
+     */
+    public ChatDecoder newDecoder(Consumer<String> onPartial) {
+        try {
+            return new ChatDecoder(factory.createNonBlockingByteBufferParser(), onPartial);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeChat(OutputStream out, String model, SerializableString system, List<ChatMessage> history,
+                           String userMessage, boolean stream) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeFieldName(MODEL);
+            generator.writeString(model);
+            generator.writeFieldName(MESSAGES);
+            generator.writeStartArray();
+            generator.writeRawValue(system);
+            for (ChatMessage message : history) {
+                writeMessage(generator, message.role(), message.content());
+            }
+            writeMessage(generator, ChatMessage.Role.USER, userMessage);
+            generator.writeEndArray();
+            generator.writeFieldName(STREAM);
+            generator.writeBoolean(stream);
+            writeKeepAlive(generator);
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeKeepAlive(JsonGenerator generator) throws IOException {
+        if (keepAlive == null) {
+            return;
+        }
+        generator.writeFieldName(KEEP_ALIVE);
+        if (keepAliveSeconds != null) {
+            generator.writeNumber(keepAliveSeconds);
+        } else {
+            generator.writeString(keepAlive);
+        }
+    }
+
+    private static void writeMessage(JsonGenerator generator, ChatMessage.Role role, String content) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ROLE);
+        generator.writeString(ROLES[role.ordinal()]);
+        generator.writeFieldName(CONTENT);
+        generator.writeString(content);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Pre-encodes {"role": ..., "content": ...} so it can be copied as raw bytes.
+     */
+    private SerializableString encodeMessage(ChatMessage.Role role, String content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() + 32);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            writeMessage(generator, role, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SerializedString(out.toString(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private static int estimateSize(List<ChatMessage> history, String userMessage) {
+        int size = userMessage.length() + 256;
+        for (ChatMessage message : history) {
+            size += message.content().length() + 32;
+        }
+        // Acentos ocupam 2 bytes em UTF-8
+        return size + size / 8;
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static HttpRequest.BodyPublisher publish(Writer writer, int estimatedSize) {
+        Buffer buffer = new Buffer(estimatedSize);
+        try {
+            writer.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Publica o próprio array do buffer, sem cópia
+        return HttpRequest.BodyPublishers.ofByteArray(buffer.array(), 0, buffer.size());
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Answer text plus the timing fields Ollama sends with the last chunk
+     * (durations in nanoseconds; 0 when absent).
+     */
+    public static final class ChatResult {
+        private final String content;
+        private final long totalDuration;
+        private final long loadDuration;
+        private final long promptEvalCount;
+        private final long promptEvalDuration;
+        private final long evalCount;
+        private final long evalDuration;
+
+        ChatResult(String content, long totalDuration, long loadDuration, long promptEvalCount,
+                   long promptEvalDuration, long evalCount, long evalDuration) {
+            this.content = content;
+            this.totalDuration = totalDuration;
+            this.loadDuration = loadDuration;
+            this.promptEvalCount = promptEvalCount;
+            this.promptEvalDuration = promptEvalDuration;
+            this.evalCount = evalCount;
+            this.evalDuration = evalDuration;
+        }
+
+        public String getContent()          { return content; }
+        public long getTotalDuration()      { return totalDuration; }
+        public long getLoadDuration()       { return loadDuration; }
+        public long getPromptEvalCount()    { return promptEvalCount; }
+        public long getPromptEvalDuration() { return promptEvalDuration; }
+        public long getEvalCount()          { return evalCount; }
+        public long getEvalDuration()       { return evalDuration; }
+
+        /** Generation speed in tokens per second (0 if unknown). */
+        public double getEvalTokensPerSecond() {
+            return evalDuration == 0 ? 0 : evalCount * 1_000_000_000.0 / evalDuration;
+        }
+
+        /** Prompt processing speed in tokens per second (0 if unknown). */
+        public double getPromptEvalTokensPerSecond() {
+            return promptEvalDuration == 0 ? 0 : promptEvalCount * 1_000_000_000.0 / promptEvalDuration;
+        }
+    }
+
+    /**
+     * Incremental decoder for a /api/chat response body. Works both as a body
+     * subscriber for {@code HttpClient} and fed by hand via {@link #feed}.
+     */
+    public static final class ChatDecoder implements Flow.Subscriber<List<ByteBuffer>> {
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final Consumer<String> onPartial;
+        private final StringBuilder answer = new StringBuilder();
+        private final CompletableFuture<ChatResult> result = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private volatile long firstContentAt;
+
+        // Estado do objeto sendo lido (um por linha no streaming)
+        private int depth;
+        private boolean inMessage;
+        private String field;
+        private boolean done;
+        private String error;
+        private long totalDuration;
+        private long loadDuration;
+        private long promptEvalCount;
+        private long promptEvalDuration;
+        private long evalCount;
+        private long evalDuration;
+
+        ChatDecoder(JsonParser parser, Consumer<String> onPartial) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.onPartial = onPartial;
+        }
+
+        public CompletableFuture<ChatResult> result() {
+            return result;
+        }
+
+        /**
+         * {@link System#nanoTime()} when the first piece of answer text arrived, or 0 if none did.
+         */
+        public long getFirstContentAt() {
+            return firstContentAt;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) {
+                // Cancelado antes de a resposta começar a chegar
+                subscription.cancel();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        /**
+         * Stops reading the body (the connection is closed, so Ollama stops generating)
+         * and fails the result with a {@link java.util.concurrent.CancellationException}.
+         */
+        public void cancel() {
+            result.cancel(false);
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    feed(buffer);
+                }
+            } catch (Exception e) {
+                fail(e instanceof OllamaException ? e
+                        : new OllamaException("❌ Resposta inválida do Ollama: " + e.getMessage(), e));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                feeder.endOfInput();
+                drain();
+            } catch (Exception e) {
+                fail(new OllamaException("❌ Resposta inválida do Ollama: " + e.getMessage(), e));
+                return;
+            }
+            if (!done) {
+                // Conexão encerrada antes do "done": true; a resposta está cortada
+                fail(new OllamaException("❌ A conexão com o Ollama caiu antes do fim da resposta. Tente de novo."));
+                return;
+            }
+            complete();
+        }
+
+        /**
+         * Feeds the next piece of the body; it must be fully consumed before the next call.
+         */
+        public void feed(ByteBuffer buffer) throws IOException {
+            if (!buffer.hasRemaining()) {
+                return;
+            }
+            feeder.feedInput(buffer);
+            drain();
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT:
+                        depth++;
+                        if (depth == 2 && "message".equals(field)) {
+                            inMessage = true;
+                        }
+                        break;
+                    case START_ARRAY:
+                        depth++;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        depth--;
+                        if (depth == 1) {
+                            inMessage = false;
+                        } else if (depth == 0) {
+                            endOfObject();
+                        }
+                        break;
+                    case FIELD_NAME:
+                        field = parser.currentName();
+                        break;
+                    case VALUE_STRING:
+                        if (inMessage && depth == 2 && "content".equals(field)) {
+                            appendContent(parser.getText());
+                        } else if (depth == 1 && "error".equals(field)) {
+                            error = parser.getText();
+                        }
+                        break;
+                    case VALUE_NUMBER_INT:
+                        if (depth == 1) {
+                            readTiming(parser.getLongValue());
+                        }
+                        break;
+                    case VALUE_TRUE:
+                        if (depth == 1 && "done".equals(field)) {
+                            done = true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void readTiming(long value) {
+            switch (field) {
+                case "total_duration":       totalDuration = value; break;
+                case "load_duration":        loadDuration = value; break;
+                case "prompt_eval_count":    promptEvalCount = value; break;
+                case "prompt_eval_duration": promptEvalDuration = value; break;
+                case "eval_count":           evalCount = value; break;
+                case "eval_duration":        evalDuration = value; break;
+                default: break;
+            }
+        }
+
+        private void appendContent(String piece) {
+            if (piece.isEmpty()) {
+                return;
+            }
+            if (answer.length() == 0) {
+                firstContentAt = System.nanoTime();
+            }
+            answer.append(piece);
+            if (onPartial != null) {
+                // Só o pedaço novo: copiar a resposta inteira a cada chunk seria O(n²)
+                onPartial.accept(piece);
+            }
+        }
+
+        private void endOfObject() {
+            if (error != null) {
+                fail(new OllamaException("Erro do Ollama: " + error));
+            } else if (done) {
+                complete();
+            }
+            field = null;
+        }
+
+        private void complete() {
+            result.complete(new ChatResult(answer.toString(), totalDuration, loadDuration, promptEvalCount,
+                    promptEvalDuration, evalCount, evalDuration));
+        }
+
+        private void fail(Throwable failure) {
+            result.completeExceptionally(failure);
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.telegram;
+
+/**
+ * Falha ao falar com o Ollama. A mensagem já está pronta para ser mostrada ao usuário.
+ */
+public class OllamaException extends RuntimeException {
+
+    public OllamaException(String message) {
+        super(message);
+    }
+
+    public OllamaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.telegram;
+
+/**
+ * A fila de requisições ao Ollama está cheia; a pergunta foi recusada sem ser enviada.
+ */
+public class OllamaOverloadedException extends OllamaException {
+
+    public OllamaOverloadedException() {
+        super("🚦 Estou recebendo muitas perguntas agora. Tente novamente em alguns instantes.");
+    }
+}
@@ -0,0 +1,218 @@
+package com.telegram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Limita quantas requisições ao Ollama rodam ao mesmo tempo.
+ *
+ * Até {@code maxConcurrent} requisições executam de imediato; as seguintes esperam
+ * numa fila de no máximo {@code maxQueued} posições. Com a fila cheia a requisição
+ * é recusada na hora com {@link OllamaOverloadedException}, em vez de acumular
+ * threads bloqueadas.
+ *
+ * A fila é justa entre {@link Flow}s (um por chat): start-time fair queuing. Cada
+ * requisição recebe a etiqueta {@code max(V, fim da anterior do mesmo flow)} e termina
+ * em {@code início + 1/peso}; a vaga livre vai para a menor etiqueta. Quem acabou de
+ * ser atendido várias vezes fica atrás de quem chegou agora, e um flow com peso 2
+ * recebe o dobro das vagas de um com peso 1 quando os dois disputam a fila.
+ * Requisições sem flow entram com a etiqueta atual (ordem de chegada).
+ *
+ * Cancelar o future devolvido por {@link #submit} cancela também a chamada em
+ * andamento e libera a vaga na hora, sem esperar a chamada terminar.
+ */
+public class RequestLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(RequestLimiter.class.getName());
+
+    // Acima disso as etiquetas já alcançadas pelo tempo virtual são descartadas
+    private static final int MAX_TRACKED_FLOWS = 4096;
+
+    /**
+     * Quem faz a requisição (normalmente o chatId) e seu peso na fila.
+     */
+    public record Flow(Object key, double weight) {
+        public Flow {
+            if (key == null || weight <= 0) {
+                throw new IllegalArgumentException("key é obrigatório e weight deve ser > 0");
+            }
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final PriorityQueue<Waiting> waiting = new PriorityQueue<>();
+    private final Map<Object, Double> finishTags = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int running;
+
+    public RequestLimiter(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("maxConcurrent deve ser > 0 e maxQueued >= 0");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Executa {@code call} quando houver vaga. A vaga é liberada quando o
+     * future devolvido por {@code call} termina (com sucesso, erro ou cancelamento)
+     * ou quando quem chamou cancela o future devolvido aqui.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        return submit(null, call);
+    }
+
+    /**
+     * Como {@link #submit(Supplier)}, disputando a fila como {@code flow} (pode ser null).
+     */
+    public <T> CompletableFuture<T> submit(Flow flow, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> start(call, result);
+
+        synchronized (this) {
+            double startTag = virtualTime;
+            if (flow != null) {
+                startTag = Math.max(virtualTime, finishTags.getOrDefault(flow.key(), 0.0));
+            }
+            if (running < maxConcurrent) {
+                running++;
+                tag(flow, startTag);
+                // Com vaga sobrando não há disputa: o tempo virtual acompanha quem entra
+                virtualTime = Math.max(virtualTime, startTag);
+            } else if (waiting.size() < maxQueued) {
+                Double previousFinish = flow != null ? finishTags.get(flow.key()) : null;
+                Waiting entry = new Waiting(flow, startTag, previousFinish, tag(flow, startTag), sequence++, start);
+                waiting.add(entry);
+                // Cancelado na fila: sai dela na hora, sem ocupar posição nem gastar a vez do flow
+                result.whenComplete((value, error) -> {
+                    if (result.isCancelled()) {
+                        dequeue(entry);
+                    }
+                });
+                return result;
+            } else {
+                LOGGER.warning("🚦 Ollama queue full (" + maxQueued + " waiting), rejecting request");
+                result.completeExceptionally(new OllamaOverloadedException());
+                return result;
+            }
+        }
+        start.run();
+        return result;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Cancelado entre sair da fila e começar
+            release();
+            return;
+        }
+        CompletableFuture<T> inner = invoke(call);
+        AtomicBoolean released = new AtomicBoolean();
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                inner.cancel(true);
+                if (released.compareAndSet(false, true)) {
+                    release();
+                }
+            }
+        });
+        inner.whenComplete((value, error) -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> invoke(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private double tag(Flow flow, double startTag) {
+        if (flow == null) {
+            return startTag;
+        }
+        double finish = startTag + 1 / flow.weight();
+        finishTags.put(flow.key(), finish);
+        return finish;
+    }
+
+    private synchronized void dequeue(Waiting entry) {
+        if (!waiting.remove(entry) || entry.flow == null) {
+            return;
+        }
+        // Devolve a etiqueta do flow se nenhuma requisição dele entrou depois
+        Object key = entry.flow.key();
+        if (finishTags.getOrDefault(key, Double.NaN) == entry.finishTag) {
+            if (entry.previousFinish == null) {
+                finishTags.remove(key);
+            } else {
+                finishTags.put(key, entry.previousFinish);
+            }
+        }
+    }
+
+    private void release() {
+        Waiting next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+            virtualTime = Math.max(virtualTime, next.startTag);
+            if (finishTags.size() > MAX_TRACKED_FLOWS) {
+                finishTags.values().removeIf(finish -> finish <= virtualTime);
+            }
+        }
+        // A vaga passa direto para o próximo da fila
+        next.start.run();
+    }
+
+    private static final class Waiting implements Comparable<Waiting> {
+        private final Flow flow;
+        private final double startTag;
+        private final Double previousFinish;
+        private final double finishTag;
+        private final long sequence;
+        private final Runnable start;
+
+        Waiting(Flow flow, double startTag, Double previousFinish, double finishTag, long sequence, Runnable start) {
+            this.flow = flow;
+            this.startTag = startTag;
+            this.previousFinish = previousFinish;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.start = start;
+        }
+
+        @Override
+        public int compareTo(Waiting other) {
+            int byTag = Double.compare(startTag, other.startTag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.telegram;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Cache de respostas para perguntas idênticas.
+ *
+ * A chave combina modelo, system prompt, texto normalizado da pergunta e o
+ * histórico do chat, então a mesma pergunta em contextos diferentes não se mistura.
+ * Tamanho limitado (LRU) e expiração por TTL; opcionalmente salvo em disco para
+ * sobreviver a reinícios.
+ */
+public class ResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseCache.class.getName());
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[?!.…\\s]+$");
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path snapshotPath;
+    private final LinkedHashMap<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ScheduledExecutorService snapshotter;
+
+    public ResponseCache(int maxEntries, long ttlMillis, Path snapshotPath) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.snapshotPath = snapshotPath;
+        // accessOrder = true: a iteração começa pela entrada usada há mais tempo (LRU)
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+        LOGGER.info("✅ ResponseCache initialized - maxEntries: " + maxEntries + ", ttl: " + ttlMillis + "ms"
+                + (snapshotPath != null ? ", snapshot: " + snapshotPath : ""));
+    }
+
+    /**
+     * Cria o cache a partir da configuração, carregando o snapshot se existir.
+     * @return o cache, ou null se estiver desabilitado.
+     */
+    public static ResponseCache fromConfig(Config.CacheConfig config) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        Path path = config.getSnapshotPath() == null || config.getSnapshotPath().isBlank()
+                ? null : Path.of(config.getSnapshotPath());
+        ResponseCache cache = new ResponseCache(config.getMaxEntries(),
+                TimeUnit.MINUTES.toMillis(config.getTtlMinutes()), path);
+        if (path != null) {
+            cache.loadSnapshot();
+            cache.startSnapshots(config.getSnapshotIntervalSeconds());
+        }
+        return cache;
+    }
+
+    /**
+     * Monta a chave do cache. O histórico entra só como hash.
+     */
+    public static String key(String model, String systemPrompt, List<ChatMessage> history, String userMessage) {
+        MessageDigest digest = sha256();
+        update(digest, model);
+        update(digest, systemPrompt);
+        for (ChatMessage message : history) {
+            update(digest, message.role().wireName());
+            update(digest, message.content());
+        }
+        update(digest, normalize(userMessage));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Normaliza a pergunta: minúsculas, sem acentos, espaços colapsados e sem
+     * pontuação final ("Qual a derivada de x^2?" == "qual a derivada de x^2").
+     */
+    public static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        normalized = DIACRITICS.matcher(normalized).replaceAll("");
+        normalized = SPACES.matcher(normalized.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    public String get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.answer;
+        }
+    }
+
+    public void put(String key, String answer) {
+        if (answer == null || answer.isBlank()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(answer, System.currentTimeMillis()));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits()   { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Salva as entradas válidas no arquivo de snapshot (escrita atômica via arquivo temporário).
+     */
+    public void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        List<SnapshotEntry> snapshot = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            // Do menos para o mais recente: ao recarregar, a ordem LRU se mantém
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (!isExpired(e.getValue(), now)) {
+                    snapshot.add(new SnapshotEntry(e.getKey(), e.getValue().answer, e.getValue().createdAt));
+                }
+            }
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("💾 Response cache saved: " + snapshot.size() + " entries, hit rate "
+                    + String.format(Locale.ROOT, "%.1f%%", getHitRate() * 100));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to save response cache snapshot", e);
+        }
+    }
+
+    public void loadSnapshot() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        try {
+            List<SnapshotEntry> snapshot = objectMapper.readValue(snapshotPath.toFile(),
+                    new TypeReference<List<SnapshotEntry>>() {});
+            long now = System.currentTimeMillis();
+            synchronized (entries) {
+                for (SnapshotEntry e : snapshot) {
+                    Entry entry = new Entry(e.answer, e.createdAt);
+                    if (!isExpired(entry, now)) {
+                        entries.put(e.key, entry);
+                    }
+                }
+            }
+            LOGGER.info("📂 Response cache loaded: " + size() + " entries from " + snapshotPath);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load response cache snapshot, starting empty", e);
+        }
+    }
+
+    /**
+     * Para o snapshot periódico e grava um último snapshot.
+     */
+    public void close() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        saveSnapshot();
+    }
+
+    private void startSnapshots(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "response-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::saveSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMillis > 0 && now - entry.createdAt > ttlMillis;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // Separador: evita que ("ab", "c") e ("a", "bc") gerem a mesma chave
+        digest.update((byte) 0);
+    }
+
+    private static final class Entry {
+        final String answer;
+        final long createdAt;
+
+        Entry(String answer, long createdAt) {
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Formato de uma entrada no arquivo de snapshot.
+     */
+    public static class SnapshotEntry {
+        public String key;
+        public String answer;
+        public long createdAt;
+
+        public SnapshotEntry() {}
+
+        SnapshotEntry(String key, String answer, long createdAt) {
+            this.key = key;
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+}
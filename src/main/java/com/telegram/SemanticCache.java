@@ -0,0 +1,253 @@
+package com.telegram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache semântico: reaproveita a resposta de uma pergunta parecida (paráfrase).
+ *
+ * A pergunta é transformada em embedding via /api/embed do Ollama e comparada com
+ * as perguntas já respondidas num {@link HnswIndex}. Se a mais parecida passar do
+ * limiar de similaridade, a resposta dela é devolvida sem gerar uma nova.
+ *
+ * Embeddings quase não mudam com os números: "derivada de 3x^4 + 2x" e "derivada
+ * de 5x^4 + 7x" ficam praticamente no mesmo ponto. Por isso cada entrada guarda a
+ * pergunta normalizada, e só conta como hit a parecida que tiver exatamente os
+ * mesmos números, variáveis e operadores ({@link #mathTokens}).
+ */
+public class SemanticCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SemanticCache.class.getName());
+
+    // De quantas em quantas consultas as estatísticas vão para o log
+    private static final int STATS_LOG_INTERVAL = 100;
+    // Vizinhos conferidos por consulta: a mesma pergunta com outros números fica
+    // toda no mesmo ponto do índice
+    private static final int CANDIDATES = 4;
+    // Números (inclusive ² e ³), letras soltas (variáveis) e operadores
+    private static final Pattern MATH_TOKEN = Pattern.compile("\\p{N}+(?:[.,]\\p{N}+)*|(?<![a-z])[a-z](?![a-z])|[-+*/^=<>]");
+    // Letras soltas que são palavras em português, não variáveis
+    private static final Set<String> SINGLE_LETTER_WORDS = Set.of("a", "e", "o");
+
+    private final OllamaClient ollamaClient;
+    private final String embeddingModel;
+    private final double threshold;
+    private final int maxEntries;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    private final Object lock = new Object();
+    private HnswIndex index;
+    private List<Entry> entries = new ArrayList<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final Histogram embedLatency = Histogram.latency();
+    private final Histogram searchLatency = Histogram.latency();
+
+    public SemanticCache(OllamaClient ollamaClient, Config.SemanticCacheConfig config) {
+        this.ollamaClient = ollamaClient;
+        this.embeddingModel = config.getEmbeddingModel();
+        this.threshold = config.getSimilarityThreshold();
+        this.maxEntries = config.getMaxEntries();
+        this.m = config.getM();
+        this.efConstruction = config.getEfConstruction();
+        this.efSearch = config.getEfSearch();
+        this.index = new HnswIndex(m, efConstruction);
+
+        LOGGER.info("✅ SemanticCache initialized - embedding model: " + embeddingModel
+                + ", threshold: " + threshold + ", maxEntries: " + maxEntries);
+    }
+
+    /**
+     * Resultado de uma consulta. Num miss guarda o embedding da pergunta, para
+     * {@link #store} não precisar calcular de novo.
+     */
+    public static final class Lookup {
+        private final String question;
+        private final float[] embedding;
+        private final String answer;
+        private final double similarity;
+
+        Lookup(String question, float[] embedding, String answer, double similarity) {
+            this.question = question;
+            this.embedding = embedding;
+            this.answer = answer;
+            this.similarity = similarity;
+        }
+
+        public boolean isHit()         { return answer != null; }
+        public String getAnswer()      { return answer; }
+        public double getSimilarity()  { return similarity; }
+    }
+
+    /**
+     * Procura uma pergunta parecida. Falhas no embedding viram miss (nunca erro).
+     */
+    public CompletableFuture<Lookup> lookup(String question) {
+        String normalized = ResponseCache.normalize(question);
+        long start = System.nanoTime();
+        return ollamaClient.embedAsync(embeddingModel, question)
+                .thenApply(embedding -> {
+                    long embedded = System.nanoTime();
+                    embedLatency.observeNanos(embedded - start);
+                    Lookup result = search(normalized, embedding);
+                    searchLatency.observeNanos(System.nanoTime() - embedded);
+                    record(result);
+                    return result;
+                })
+                .exceptionally(error -> {
+                    LOGGER.log(Level.WARNING, "Embedding failed, skipping semantic cache: " + error.getMessage());
+                    Lookup miss = new Lookup(normalized, null, null, 0);
+                    record(miss);
+                    return miss;
+                });
+    }
+
+    /**
+     * Guarda a resposta gerada para uma pergunta que deu miss.
+     */
+    public void store(Lookup lookup, String answer) {
+        if (lookup == null || lookup.embedding == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        synchronized (lock) {
+            if (entries.size() >= maxEntries) {
+                evictOldestHalf();
+            }
+            // Os ids do índice são sequenciais, então id == posição na lista
+            index.add(lookup.embedding);
+            entries.add(new Entry(lookup.embedding, lookup.question, answer));
+        }
+    }
+
+    public long getLookups()  { return lookups.sum(); }
+    public long getHits()     { return hits.sum(); }
+    public long getMismatches() { return mismatches.sum(); }
+    public Histogram getEmbedLatency()  { return embedLatency; }
+    public Histogram getSearchLatency() { return searchLatency; }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0.0 : (double) hits.sum() / total;
+    }
+
+    /** Tempo médio da chamada /api/embed, em milissegundos. */
+    public double getAverageEmbedMillis() {
+        long total = embedLatency.getCount();
+        return total == 0 ? 0.0 : embedLatency.getSum() * 1_000 / total;
+    }
+
+    /** Tempo médio da busca no índice, em microssegundos. */
+    public double getAverageSearchMicros() {
+        long total = searchLatency.getCount();
+        return total == 0 ? 0.0 : searchLatency.getSum() * 1_000_000 / total;
+    }
+
+    /**
+     * Números, variáveis e operadores da pergunta normalizada, na ordem em que
+     * aparecem ("derivada de 3x^4 + 2x" -> "3 x ^ 4 + 2 x").
+     */
+    static String mathTokens(String normalizedQuestion) {
+        StringBuilder tokens = new StringBuilder();
+        Matcher matcher = MATH_TOKEN.matcher(normalizedQuestion);
+        while (matcher.find()) {
+            String token = matcher.group();
+            if (SINGLE_LETTER_WORDS.contains(token)) {
+                continue;
+            }
+            if (tokens.length() > 0) {
+                tokens.append(' ');
+            }
+            tokens.append(token);
+        }
+        return tokens.toString();
+    }
+
+    private Lookup search(String question, float[] embedding) {
+        HnswIndex current;
+        List<Entry> currentEntries;
+        synchronized (lock) {
+            current = index;
+            currentEntries = entries;
+        }
+        List<HnswIndex.Neighbor> nearest = current.search(embedding, CANDIDATES, efSearch);
+        String tokens = mathTokens(question);
+        for (HnswIndex.Neighbor neighbor : nearest) {
+            if (neighbor.similarity < threshold) {
+                break;
+            }
+            Entry entry;
+            synchronized (lock) {
+                if (neighbor.id >= currentEntries.size()) {
+                    continue;
+                }
+                entry = currentEntries.get(neighbor.id);
+            }
+            if (entry.mathTokens.equals(tokens)) {
+                return new Lookup(question, embedding, entry.answer, neighbor.similarity);
+            }
+            // Parecida, mas com outros números: a resposta dela estaria errada
+            mismatches.increment();
+        }
+        return new Lookup(question, embedding, null, nearest.isEmpty() ? 0 : nearest.get(0).similarity);
+    }
+
+    private void record(Lookup result) {
+        lookups.increment();
+        if (result.isHit()) {
+            hits.increment();
+            LOGGER.info(String.format(Locale.ROOT, "🧠 Semantic cache hit (similarity %.3f)", result.similarity));
+        }
+        if (lookups.sum() % STATS_LOG_INTERVAL == 0) {
+            LOGGER.info(String.format(Locale.ROOT,
+                    "📊 Semantic cache: %d entries, hit rate %.1f%%, embed %.1fms, search %.1fµs",
+                    size(), getHitRate() * 100, getAverageEmbedMillis(), getAverageSearchMicros()));
+        }
+    }
+
+    /**
+     * HNSW não remove nós com facilidade: quando enche, reconstrói o índice só
+     * com a metade mais recente das entradas.
+     */
+    private void evictOldestHalf() {
+        List<Entry> kept = new ArrayList<>(entries.subList(entries.size() / 2, entries.size()));
+        HnswIndex rebuilt = new HnswIndex(m, efConstruction);
+        for (Entry entry : kept) {
+            rebuilt.add(entry.embedding);
+        }
+        index = rebuilt;
+        entries = kept;
+        LOGGER.info("♻️ Semantic cache full, kept the " + kept.size() + " most recent entries");
+    }
+
+    private static final class Entry {
+        final float[] embedding;
+        final String question;
+        final String mathTokens;
+        final String answer;
+
+        Entry(float[] embedding, String question, String answer) {
+            this.embedding = embedding;
+            this.question = question;
+            this.mathTokens = mathTokens(question);
+            this.answer = answer;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.telegram;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mostra uma resposta do Ollama enquanto ela é gerada.
+ *
+ * O primeiro pedaço de texto é enviado como uma mensagem nova; os seguintes
+ * editam essa mesma mensagem, no máximo uma vez a cada {@code editIntervalMs}
+ * (o Telegram limita as edições por chat). Durante o streaming o texto vai sem
+ * Markdown, porque um trecho parcial pode ter marcações abertas. Os envios passam
+ * pelo {@link TelegramSender}: enquanto um envio/edição não termina, os pedaços
+ * novos só são acumulados (o próximo envio já leva o texto todo). O texto só vira
+ * String quando vai de fato para o Telegram.
+ *
+ * Se a geração for cancelada ou falhar no meio, {@link #abort} faz uma última edição
+ * marcando o texto como interrompido.
+ */
+public class StreamingReply implements Consumer<String> {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingReply.class.getName());
+
+    // Limite do Telegram para o texto de uma mensagem
+    static final int MAX_MESSAGE_LENGTH = TelegramSender.MAX_MESSAGE_LENGTH;
+    // Vai no fim do texto parcial de uma resposta que não terminou
+    static final String INTERRUPTED = "\n\n⏹️ resposta interrompida";
+
+    private final TelegramSender sender;
+    private final Long chatId;
+    private final long editIntervalMs;
+
+    private final StringBuilder text = new StringBuilder();
+    private boolean hasText;
+    private boolean aborted;
+    private Integer messageId;
+    private CompletableFuture<?> inFlight = CompletableFuture.completedFuture(null);
+    private String lastSentText = "";
+    private long lastEditAt;
+
+    public StreamingReply(TelegramSender sender, Long chatId, long editIntervalMs) {
+        this.sender = sender;
+        this.chatId = chatId;
+        this.editIntervalMs = editIntervalMs;
+    }
+
+    /**
+     * Recebe o próximo pedaço da resposta.
+     */
+    @Override
+    public synchronized void accept(String piece) {
+        if (aborted) {
+            // Pedaços que ainda estavam a caminho quando a geração foi cancelada
+            return;
+        }
+        text.append(piece);
+        hasText |= !piece.isBlank();
+        if (!hasText || !inFlight.isDone()) {
+            return;
+        }
+        if (messageId == null) {
+            send(text.toString());
+        } else if (System.currentTimeMillis() - lastEditAt >= editIntervalMs) {
+            edit(text.toString(), false);
+        }
+    }
+
+    /**
+     * Publica o texto final, já com Markdown. Se passar de 4096 caracteres, o
+     * começo fica na mensagem editada e o resto vai em mensagens novas.
+     * @return future com true se a resposta foi entregue, false se nada chegou a
+     *         ser transmitido (quem chamou envia a resposta do jeito normal).
+     */
+    public CompletableFuture<Boolean> finish(String finalText) {
+        CompletableFuture<?> previous;
+        synchronized (this) {
+            previous = inFlight;
+        }
+        return previous.handle((ignored, error) -> null).thenCompose(ignored -> {
+            synchronized (this) {
+                if (messageId == null) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                List<String> chunks = TelegramSender.split(finalText, MAX_MESSAGE_LENGTH);
+                CompletableFuture<Boolean> first = edit(chunks.get(0), true);
+                for (String chunk : chunks.subList(1, chunks.size())) {
+                    sender.sendText(chatId, chunk, true);
+                }
+                return first;
+            }
+        });
+    }
+
+    /**
+     * Encerra uma resposta que não vai terminar (geração cancelada por uma nova
+     * mensagem ou {@code /clear}, ou com erro): a mensagem do streaming recebe o
+     * texto parcial seguido de "⏹️ resposta interrompida", para não ficar parada no
+     * meio da frase parecendo uma resposta completa. Nada acontece se nada foi
+     * transmitido.
+     */
+    public CompletableFuture<Void> abort() {
+        CompletableFuture<?> previous;
+        synchronized (this) {
+            aborted = true;
+            previous = inFlight;
+        }
+        return previous.handle((ignored, error) -> null).thenCompose(ignored -> {
+            synchronized (this) {
+                if (messageId == null) {
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                String partial = text.toString().stripTrailing();
+                int room = MAX_MESSAGE_LENGTH - INTERRUPTED.length();
+                String marked = (partial.length() <= room ? partial : partial.substring(0, room)) + INTERRUPTED;
+                LOGGER.info("⏹️ Streamed answer interrupted in chat " + chatId);
+                return edit(marked, false).thenApply(delivered -> (Void) null);
+            }
+        });
+    }
+
+    public synchronized boolean hasStarted() {
+        return messageId != null;
+    }
+
+    private void send(String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(truncate(text));
+        lastSentText = message.getText();
+        lastEditAt = System.currentTimeMillis();
+        inFlight = sender.submit(chatId, message).handle((sent, error) -> {
+            synchronized (this) {
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Failed to send first chunk", error);
+                    lastSentText = "";
+                } else {
+                    messageId = sent.getMessageId();
+                    LOGGER.info("📤 First chunk sent to chat " + chatId);
+                }
+            }
+            return null;
+        });
+    }
+
+    private CompletableFuture<Boolean> edit(String text, boolean markdown) {
+        String truncated = truncate(text);
+        if (!markdown && truncated.equals(lastSentText)) {
+            // O Telegram recusa edições que não mudam o texto
+            return CompletableFuture.completedFuture(true);
+        }
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId.toString());
+        edit.setMessageId(messageId);
+        edit.setText(truncated);
+        if (markdown) {
+            edit.enableMarkdown(true);
+        }
+        String previousText = lastSentText;
+        lastSentText = truncated;
+        lastEditAt = System.currentTimeMillis();
+        CompletableFuture<Boolean> result = sender.submit(chatId, edit).handle((response, error) -> {
+            if (error != null) {
+                LOGGER.log(Level.FINE, "Failed to edit streamed message", error);
+                // "message is not modified": o texto final já estava na tela
+                return truncated.equals(previousText);
+            }
+            return true;
+        });
+        inFlight = result;
+        return result;
+    }
+
+    private static String truncate(String text) {
+        return text.length() <= MAX_MESSAGE_LENGTH ? text : text.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
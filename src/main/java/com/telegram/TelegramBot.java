@@ -1,33 +1,165 @@
 package com.telegram;
 
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.ActionType;
-import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 public class TelegramBot extends TelegramLongPollingBot {
     
     private static final Logger LOGGER = Logger.getLogger(TelegramBot.class.getName());
+    // O Telegram recusa mensagens sem texto
+    private static final String EMPTY_ANSWER = "🤔 O modelo não gerou uma resposta. Tente reformular a pergunta.";
     
     private final String botToken;
     private final String botUsername;
     private final OllamaClient ollamaClient;
     private final ChatMemory chatMemory;
+    private final UpdateDispatcher dispatcher;
+    private final Config.StreamingConfig streaming;
+    private final ResponseCache responseCache;
+    private final SemanticCache semanticCache;
+    private final MathEngine mathEngine;
+    private final HistorySummarizer summarizer;
+    private final ModelRouter router;
+    private final ChatScheduler scheduler;
+    private final TelegramSender sender;
+    // Geração em andamento de cada chat, para cancelar quando ela perde o sentido
+    private final Map<Long, CompletableFuture<String>> generations = new ConcurrentHashMap<>();
+    private final LongAdder cancelledGenerations = new LongAdder();
 
     public TelegramBot(String botToken, String botUsername, OllamaClient ollamaClient) {
-        this.botToken = botToken;
-        this.botUsername = botUsername;
+        this(defaultConfig(botToken, botUsername), ollamaClient);
+    }
+
+    public TelegramBot(Config config, OllamaClient ollamaClient) {
+        super(botOptions(config.getTelegram()), config.getTelegramToken());
+        this.botToken = config.getTelegramToken();
+        this.botUsername = config.getBotUsername();
         this.ollamaClient = ollamaClient;
-        this.chatMemory = new ChatMemory(); 
+        this.chatMemory = new ChatMemory(config.getMemory());
+        this.sender = new TelegramSender(this, config.getTelegram());
+        this.dispatcher = new UpdateDispatcher(config.getDispatcher());
+        this.streaming = config.getStreaming();
+        this.responseCache = ResponseCache.fromConfig(config.getCache());
+        this.semanticCache = config.getSemanticCache().isEnabled()
+                ? new SemanticCache(ollamaClient, config.getSemanticCache()) : null;
+        this.mathEngine = config.getMathEngine().isEnabled() ? new MathEngine() : null;
+        this.summarizer = config.getSummarization().isEnabled()
+                ? new HistorySummarizer(ollamaClient, chatMemory, config.getSummarization()) : null;
+        this.router = config.getRouting().isEnabled() ? new ModelRouter(config.getRouting()) : null;
+        this.scheduler = config.getScheduler().isEnabled() ? new ChatScheduler(config.getScheduler()) : null;
         
         LOGGER.info("✅ TelegramBot initialized: " + botUsername);
     }
 
+    /**
+     * Opções da API: a URL base vem de 'telegram.apiUrl' (outro servidor, ex.: um Telegram falso em testes de carga).
+     */
+    private static DefaultBotOptions botOptions(Config.TelegramConfig telegram) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        String apiUrl = telegram.getApiUrl();
+        options.setBaseUrl((apiUrl.endsWith("/") ? apiUrl : apiUrl + "/") + "bot");
+        return options;
+    }
+
+    private static Config defaultConfig(String botToken, String botUsername) {
+        Config config = new Config();
+        config.setTelegramToken(botToken);
+        config.setBotUsername(botUsername);
+        return config;
+    }
+
+    /**
+     * Espera os updates em andamento e libera os recursos do bot.
+     */
+    public void shutdown() {
+        dispatcher.shutdown(30, TimeUnit.SECONDS);
+        sender.shutdown(10, TimeUnit.SECONDS);
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        chatMemory.close();
+        if (responseCache != null) {
+            responseCache.close();
+        }
+    }
+
+    /**
+     * Métricas do bot para o /metrics: fila de updates, envios ao Telegram,
+     * memória e caches.
+     */
+    public void writeMetrics(MetricsWriter out) {
+        out.histogram("update_queue_seconds", "Time an update waits before being processed.",
+                        dispatcher.getQueueTime())
+                .gauge("updates_in_flight", "Updates being processed or waiting.", dispatcher.getInFlight())
+                .gauge("update_chats_active", "Chats with updates queued or being processed.",
+                        dispatcher.getActiveChats())
+                .counter("update_errors_total", "Updates that failed with an exception.", dispatcher.getErrors())
+                .counter("generations_cancelled_total", "Generations cancelled by a new message or /clear.",
+                        cancelledGenerations.sum())
+                .histogram("telegram_send_seconds", "Latency of successful Telegram API calls.",
+                        sender.getSendLatency())
+                .gauge("telegram_send_pending", "Telegram API calls waiting to be sent.", sender.getPending())
+                .counter("telegram_sent_total", "Successful Telegram API calls.", sender.getSent())
+                .counter("telegram_retries_total", "Telegram API calls retried.", sender.getRetries())
+                .counter("telegram_send_failures_total", "Telegram API calls that gave up.", sender.getFailures())
+                .gauge("active_chats", "Chats with history in memory.", chatMemory.getChatCount())
+                .gauge("memory_tokens", "Estimated tokens held by the chat memory.", chatMemory.getTotalTokens())
+                .counter("memory_evictions_total", "Chats evicted from memory.", chatMemory.getEvictions())
+                .gauge("memory_journal_failed", "1 when the chat journal writer stopped and history is no longer persisted.",
+                        chatMemory.isJournalFailed() ? 1 : 0);
+        if (responseCache != null) {
+            out.counter("response_cache_hits_total", "Exact-match cache hits.", responseCache.getHits())
+                    .counter("response_cache_misses_total", "Exact-match cache misses.", responseCache.getMisses());
+        }
+        if (semanticCache != null) {
+            out.counter("semantic_cache_lookups_total", "Semantic cache lookups.", semanticCache.getLookups())
+                    .counter("semantic_cache_hits_total", "Semantic cache hits.", semanticCache.getHits())
+                    .counter("semantic_cache_mismatches_total",
+                            "Similar cached questions skipped because their numbers or variables differ.",
+                            semanticCache.getMismatches())
+                    .histogram("semantic_cache_embed_seconds", "Latency of the /api/embed call per lookup.",
+                            semanticCache.getEmbedLatency())
+                    .histogram("semantic_cache_search_seconds", "Latency of the nearest-neighbour search.",
+                            semanticCache.getSearchLatency());
+        }
+        if (summarizer != null) {
+            out.counter("summaries_total", "Conversation summaries applied.", summarizer.getSummaries())
+                    .counter("summary_tokens_saved_total", "Tokens removed from history by summaries.",
+                            summarizer.getTokensSaved());
+        }
+        if (router != null) {
+            router.writeMetrics(out);
+        }
+        if (scheduler != null) {
+            scheduler.writeMetrics(out);
+        }
+    }
+
+    /**
+     * Registra no Telegram a URL pública do webhook (modo webhook). Com vários
+     * bots atrás de um load balancer, todos registram a mesma URL.
+     */
+    public void registerWebhook(Config.WebhookConfig webhook) throws TelegramApiException {
+        SetWebhook setWebhook = new SetWebhook(webhook.getUrl());
+        setWebhook.setSecretToken(webhook.getSecretToken());
+        setWebhook.setMaxConnections(webhook.getMaxConnections());
+        setWebhook.setDropPendingUpdates(webhook.isDropPendingUpdates());
+        execute(setWebhook);
+        LOGGER.info("🔗 Webhook registered: " + webhook.getUrl());
+    }
+
     @Override
     public String getBotUsername() {
         return botUsername;
@@ -50,22 +182,117 @@ public class TelegramBot extends TelegramLongPollingBot {
                 LOGGER.info("💬 Message from chat " + chatId + ": " + messageText);
                 
                 if (messageText.startsWith("/")) {
-                    handleCommand(chatId, messageText);
-                } else {
-                    handleUserMessage(chatId, messageText);
+                    if (isCommand(messageText, "/clear")) {
+                        // Um /clear torna inúteis a resposta em andamento e as perguntas
+                        // que ainda não começaram: cancela e descarta já
+                        cancelGeneration(chatId);
+                        if (scheduler == null) {
+                            // Sem scheduler não há como descartar a fila do chat: o /clear
+                            // entra nela e limpa o histórico depois das perguntas anteriores
+                            dispatcher.dispatch(chatId, () -> handleCommand(chatId, messageText));
+                            return;
+                        }
+                        scheduler.clear(chatId);
+                    }
+                    // Comandos não esperam as perguntas do chat que estão na fila
+                    dispatcher.dispatchUnordered(chatId, () -> handleCommand(chatId, messageText));
+                    return;
                 }
+                
+                admitQuestion(chatId, messageText);
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "❌ Error processing update", e);
         }
     }
 
+    private static boolean isCommand(String text, String command) {
+        return normalizeCommand(text).equals(command);
+    }
+
+    // Remove o nome do bot (@...) e pega o primeiro token
+    private static String normalizeCommand(String command) {
+        return command.toLowerCase().split(" ")[0].split("@")[0];
+    }
+
+    /**
+     * Cancela a geração em andamento do chat, se houver: a conexão com o Ollama é
+     * fechada e o slot fica livre na hora.
+     */
+    void cancelGeneration(Long chatId) {
+        CompletableFuture<String> generation = generations.remove(chatId);
+        if (generation != null && generation.cancel(true)) {
+            cancelledGenerations.increment();
+            LOGGER.info("🛑 Cancelled generation for chat " + chatId);
+        }
+    }
+
+    private CompletableFuture<String> track(Long chatId, ModelRouter.Route route, CompletableFuture<String> generation) {
+        if (route != null) {
+            router.track(route, generation);
+        }
+        generations.put(chatId, generation);
+        generation.whenComplete((response, error) -> generations.remove(chatId, generation));
+        return generation;
+    }
+
+    /**
+     * Passa a pergunta pelo {@link ChatScheduler}: vira uma nova pergunta, é juntada
+     * à que ainda não começou (mensagens seguidas viram uma pergunta só) ou é
+     * recusada com um aviso para esperar.
+     */
+    private void admitQuestion(Long chatId, String messageText) {
+        if (scheduler == null) {
+            cancelGeneration(chatId);
+            // Processa fora da thread de polling, mantendo a ordem dentro do chat
+            dispatcher.dispatchAsync(chatId, () -> handleUserMessage(chatId, messageText));
+            return;
+        }
+
+        ChatScheduler.Admission admission = scheduler.admit(chatId, messageText);
+        if (admission.getOutcome() == ChatScheduler.Outcome.REJECTED) {
+            if (admission.shouldNotify()) {
+                sendMessage(chatId, "⏳ Calma! Ainda estou respondendo suas mensagens anteriores. "
+                        + "Espere a resposta antes de mandar outra.");
+            }
+            return;
+        }
+
+        // Uma nova pergunta torna a resposta em andamento inútil: cancela já, para
+        // liberar o Ollama e a fila do chat
+        cancelGeneration(chatId);
+        if (admission.getOutcome() == ChatScheduler.Outcome.ACCEPTED) {
+            ChatScheduler.Turn turn = admission.getTurn();
+            // Só despacha quando a janela de coalescência fechar. Roda no timer do
+            // scheduler: sem vaga no dispatcher, recusa em vez de travar os outros chats
+            scheduler.whenReady(turn, () -> {
+                if (!dispatcher.tryDispatchAsync(chatId, () -> startTurn(chatId, turn))) {
+                    if (turn.start() != null) {
+                        sendMessage(chatId, new OllamaOverloadedException().getMessage());
+                    }
+                }
+            });
+        }
+    }
+
+    private CompletableFuture<Void> startTurn(Long chatId, ChatScheduler.Turn turn) {
+        String question = turn.start();
+        if (question == null) {
+            LOGGER.info("🧹 Question from chat " + chatId + " dropped by /clear");
+            return CompletableFuture.completedFuture(null);
+        }
+        return handleUserMessage(chatId, question);
+    }
+
+    private RequestLimiter.Flow flowOf(Long chatId) {
+        return scheduler != null ? scheduler.flowOf(chatId) : new RequestLimiter.Flow(chatId, 1);
+    }
+
     private void handleCommand(Long chatId, String command) {
         LOGGER.info("🔧 Command: " + command);
         
         try {
-            // Normaliza o comando: remove o nome do bot (@...) e pega o primeiro token
-            String normalizedCommand = command.toLowerCase().split(" ")[0].split("@")[0]; 
+            String normalizedCommand = normalizeCommand(command);
 
             switch (normalizedCommand) {
                 case "/start":
@@ -95,33 +322,155 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void handleUserMessage(Long chatId, String userMessage) {
+    private CompletableFuture<Void> handleUserMessage(Long chatId, String userMessage) {
         LOGGER.info("💭 Processing message...");
         
         try {
+            // Contas simples são resolvidas na hora, sem o modelo (e sem erro de arredondamento do LLM)
+            if (mathEngine != null) {
+                String answer = mathEngine.tryAnswer(userMessage);
+                if (answer != null) {
+                    LOGGER.info("🧮 Answered by MathEngine, skipping Ollama");
+                    replyLocally(chatId, userMessage, answer);
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+            
             sendTypingAction(chatId);
             
             // Pega o histórico ANTES de adicionar a mensagem atual
             var history = chatMemory.getHistory(chatId);
             
-            // Adiciona a mensagem do usuário ao histórico ANTES da chamada ao Ollama
-            chatMemory.addMessage(chatId, "user", userMessage); 
+            // O modelo é escolhido antes do cache: cada modelo tem as suas respostas
+            ModelRouter.Route route = router != null ? router.route(history, userMessage) : null;
             
-            LOGGER.info("🤖 Querying Ollama...");
-            String response = ollamaClient.chat(history, userMessage);
+            String cacheKey = null;
+            if (responseCache != null) {
+                cacheKey = ResponseCache.key(modelOf(route), ollamaClient.getSystemPrompt(),
+                        history, userMessage);
+                String cached = responseCache.get(cacheKey);
+                if (cached != null) {
+                    LOGGER.info("⚡ Cache hit, skipping Ollama");
+                    replyLocally(chatId, userMessage, cached);
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+            final String key = cacheKey;
             
-            // Adiciona a resposta do assistente ao histórico
-            chatMemory.addMessage(chatId, "assistant", response); 
-            sendMessage(chatId, response);
+            // Paráfrases só são reaproveitadas no início da conversa: com histórico,
+            // a mesma pergunta pode pedir outra resposta
+            if (semanticCache != null && history.isEmpty()) {
+                return semanticCache.lookup(userMessage)
+                        .thenCompose(lookup -> {
+                            if (lookup.isHit()) {
+                                replyLocally(chatId, userMessage, lookup.getAnswer());
+                                cacheAnswer(key, lookup.getAnswer());
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            return queryModel(chatId, history, userMessage, route, key, lookup);
+                        })
+                        .exceptionally(error -> replyWithError(chatId, error));
+            }
             
-            LOGGER.info("✅ Response sent");
+            return queryModel(chatId, history, userMessage, route, key, null);
             
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error handling message", e);
-            sendMessage(chatId, "❌ Erro: " + e.getMessage());
+            return CompletableFuture.completedFuture(replyWithError(chatId, e));
+        }
+    }
+
+    private String modelOf(ModelRouter.Route route) {
+        return route != null ? route.getModel() : ollamaClient.getModelName();
+    }
+
+    private CompletableFuture<Void> queryModel(Long chatId, List<ChatMessage> history, String userMessage,
+                                               ModelRouter.Route route, String cacheKey, SemanticCache.Lookup lookup) {
+        // Adiciona a mensagem do usuário ao histórico ANTES da chamada ao Ollama.
+        // Se a geração for cancelada por uma mensagem nova, a pergunta fica no histórico
+        // sem resposta de propósito: a nova quase sempre continua a mesma ("e de x^3?")
+        // e o modelo precisa dela como contexto. O /clear apaga tudo de qualquer forma.
+        chatMemory.addMessage(chatId, "user", userMessage); 
+        
+        LOGGER.info("🤖 Querying Ollama...");
+        if (streaming.isEnabled()) {
+            StreamingReply reply = new StreamingReply(sender, chatId, streaming.getEditIntervalMs());
+            return track(chatId, route, ollamaClient.chatStreamAsync(modelOf(route), flowOf(chatId), history,
+                            userMessage, reply))
+                    .thenCompose(response -> {
+                        cacheAnswer(cacheKey, response);
+                        storeSemantic(lookup, response);
+                        chatMemory.addMessage(chatId, "assistant", response); 
+                        return reply.finish(response)
+                                .thenCompose(delivered -> delivered ? CompletableFuture.<Void>completedFuture(null)
+                                        // Nada foi transmitido (ex.: resposta vazia)
+                                        : sendMessage(chatId, answerText(response)))
+                                .thenRun(() -> {
+                                    LOGGER.info("✅ Response sent");
+                                    // O resumo só começa depois de a resposta chegar ao usuário
+                                    summarizeIfNeeded(chatId);
+                                });
+                    })
+                    .exceptionally(error -> {
+                        // O texto parcial já na tela não pode parecer uma resposta completa
+                        reply.abort();
+                        return replyWithError(chatId, error);
+                    });
+        }
+        
+        return track(chatId, route, ollamaClient.chatAsync(modelOf(route), flowOf(chatId), history, userMessage))
+                .thenCompose(response -> {
+                    cacheAnswer(cacheKey, response);
+                    storeSemantic(lookup, response);
+                    // Adiciona a resposta do assistente ao histórico
+                    chatMemory.addMessage(chatId, "assistant", response); 
+                    return sendMessage(chatId, answerText(response)).thenRun(() -> {
+                        LOGGER.info("✅ Response sent");
+                        summarizeIfNeeded(chatId);
+                    });
+                })
+                .exceptionally(error -> replyWithError(chatId, error));
+    }
+
+    private void replyLocally(Long chatId, String userMessage, String answer) {
+        chatMemory.addMessage(chatId, "user", userMessage);
+        chatMemory.addMessage(chatId, "assistant", answer);
+        sendMessage(chatId, answer).thenRun(() -> summarizeIfNeeded(chatId));
+    }
+
+    private void summarizeIfNeeded(Long chatId) {
+        if (summarizer != null) {
+            summarizer.maybeSummarize(chatId);
+        }
+    }
+
+    private void storeSemantic(SemanticCache.Lookup lookup, String answer) {
+        if (semanticCache != null && !answer.isBlank()) {
+            semanticCache.store(lookup, answer);
+        }
+    }
+
+    private static String answerText(String response) {
+        return response.isBlank() ? EMPTY_ANSWER : response;
+    }
+
+    private void cacheAnswer(String key, String answer) {
+        // Resposta vazia não vale a pena repetir
+        if (key != null && !answer.isBlank()) {
+            responseCache.put(key, answer);
         }
     }
 
+    private Void replyWithError(Long chatId, Throwable error) {
+        if (OllamaClient.isCancellation(error)) {
+            // Cancelada de propósito (nova mensagem ou /clear): não há o que avisar
+            return null;
+        }
+        String message = OllamaClient.describeError(error);
+        LOGGER.log(Level.SEVERE, "Error handling message: " + message, error);
+        sendMessage(chatId, message);
+        return null;
+    }
+
     private void testOllama(Long chatId) {
         sendMessage(chatId, "🔍 Testando Ollama...");
         
@@ -132,29 +481,23 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void sendMessage(Long chatId, String text) {
-        try {
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId.toString());
-            message.setText(text);
-            message.enableMarkdown(true);
-            
-            execute(message);
-            LOGGER.info("📤 Message sent");
-            
-        } catch (TelegramApiException e) {
-            LOGGER.log(Level.SEVERE, "Failed to send message", e);
-        }
+    /**
+     * Enfileira a mensagem no {@link TelegramSender}; não espera o envio.
+     * @return future que completa (sem erro) quando o envio termina ou desiste
+     */
+    private CompletableFuture<Void> sendMessage(Long chatId, String text) {
+        return sender.sendText(chatId, text, true).handle((sent, error) -> {
+            if (error != null) {
+                LOGGER.log(Level.SEVERE, "Failed to send message", error);
+            } else {
+                LOGGER.info("📤 Message sent");
+            }
+            return null;
+        });
     }
 
     private void sendTypingAction(Long chatId) {
-        try {
-            SendChatAction action = new SendChatAction();
-            action.setChatId(chatId.toString());
-            action.setAction(ActionType.TYPING);
-            execute(action);
-        } catch (TelegramApiException e) {
-            // Não é crítico
-        }
+        // Não é crítico: o sender descarta se o chat já tiver algo na fila
+        sender.sendTyping(chatId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,445 @@
+package com.telegram;
+
+import org.telegram.telegrambots.meta.api.methods.ActionType;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fila de saída para a API do Telegram.
+ *
+ * Quem responde ao usuário só enfileira e recebe um {@link CompletableFuture}; o
+ * envio acontece num pool próprio. Cada chat tem sua fila (as mensagens saem na
+ * ordem, uma de cada vez) e seu {@link TokenBucket}, e um balde global segura o
+ * total do bot. Erro 429 respeita o {@code retry_after} do Telegram; falhas de rede
+ * são repetidas com espera exponencial. Textos maiores que 4096 caracteres são
+ * divididos em várias mensagens.
+ */
+public class TelegramSender {
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramSender.class.getName());
+
+    // Limite do Telegram para o texto de uma mensagem
+    static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long IDLE_CLEANUP_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final AbsSender bot;
+    private final double perChatPerSecond;
+    private final double perChatBurst;
+    private final int maxRetries;
+    private final TokenBucket global;
+    private final ExecutorService workers;
+    private final Thread scheduler;
+
+    private final Object lock = new Object();
+    private final Map<Long, ChatQueue> chats = new HashMap<>();
+    private final DelayQueue<Ticket> ready = new DelayQueue<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Histogram sendLatency = Histogram.latency();
+    private volatile boolean running = true;
+    private volatile long globalBlockedUntil;
+    private int pending;
+
+    public TelegramSender(AbsSender bot, Config.TelegramConfig config) {
+        this.bot = bot;
+        this.perChatPerSecond = config.getPerChatMessagesPerSecond();
+        this.perChatBurst = config.getPerChatBurst();
+        this.maxRetries = config.getMaxRetries();
+        this.global = new TokenBucket(config.getGlobalMessagesPerSecond(), config.getGlobalMessagesPerSecond());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getSendThreads(), r -> {
+            Thread thread = new Thread(r, "telegram-send-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = new Thread(this::schedule, "telegram-send-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+
+        LOGGER.info("✅ TelegramSender initialized - global: " + config.getGlobalMessagesPerSecond()
+                + "/s, per chat: " + perChatPerSecond + "/s (burst " + perChatBurst + ")");
+    }
+
+    /**
+     * Envia um texto, dividido em mensagens de até 4096 caracteres. Se o Telegram
+     * recusar o Markdown (o modelo às vezes gera marcações quebradas), o pedaço é
+     * reenviado como texto puro.
+     * @return a última mensagem enviada
+     */
+    public CompletableFuture<Message> sendText(Long chatId, String text, boolean markdown) {
+        CompletableFuture<Message> last = null;
+        for (String chunk : split(text, MAX_MESSAGE_LENGTH)) {
+            last = sendChunk(chatId, chunk, markdown);
+        }
+        return last;
+    }
+
+    /**
+     * Mostra "digitando..." no chat. Se já houver algo na fila do chat, é descartado.
+     */
+    public void sendTyping(Long chatId) {
+        SendChatAction action = new SendChatAction();
+        action.setChatId(chatId.toString());
+        action.setAction(ActionType.TYPING);
+        enqueue(chatId, action, false);
+    }
+
+    /**
+     * Enfileira qualquer método da API (ex.: {@code EditMessageText}).
+     */
+    public <T extends Serializable> CompletableFuture<T> submit(Long chatId, BotApiMethod<T> method) {
+        return enqueue(chatId, method, true);
+    }
+
+    public int getPending() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    public long getSent()     { return sent.sum(); }
+    public long getRetries()  { return retries.sum(); }
+    public long getFailures() { return failures.sum(); }
+
+    /**
+     * Duração de cada chamada à API do Telegram que deu certo, em segundos.
+     */
+    public Histogram getSendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * Espera a fila esvaziar (até o timeout) e para as threads de envio.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            synchronized (lock) {
+                while (pending > 0 && System.nanoTime() < deadline) {
+                    lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        scheduler.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Divide o texto em pedaços de até {@code max} caracteres, preferindo quebrar
+     * em fim de linha ou espaço.
+     */
+    static List<String> split(String text, int max) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > max) {
+            int end = text.lastIndexOf('\n', start + max);
+            if (end <= start) {
+                end = text.lastIndexOf(' ', start + max);
+            }
+            if (end <= start) {
+                end = start + max;
+                // Não separa um par surrogate (emoji)
+                if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            chunks.add(text.substring(start, end));
+            start = end;
+            while (start < text.length() && (text.charAt(start) == '\n' || text.charAt(start) == ' ')) {
+                start++;
+            }
+        }
+        if (start < text.length() || chunks.isEmpty()) {
+            chunks.add(text.substring(start));
+        }
+        return chunks;
+    }
+
+    private CompletableFuture<Message> sendChunk(Long chatId, String chunk, boolean markdown) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(chunk);
+        message.enableMarkdown(markdown);
+        return enqueue(chatId, message, true);
+    }
+
+    private <T extends Serializable> CompletableFuture<T> enqueue(Long chatId, BotApiMethod<T> method, boolean retry) {
+        Outbound<T> outbound = new Outbound<>(method, retry);
+        synchronized (lock) {
+            if (!running) {
+                outbound.future.completeExceptionally(new IllegalStateException("TelegramSender parado"));
+                return outbound.future;
+            }
+            ChatQueue chat = chats.computeIfAbsent(chatId, ChatQueue::new);
+            if (!retry && (chat.inFlight || !chat.queue.isEmpty())) {
+                // Ação descartável (digitando...): não atrasa as mensagens de verdade
+                outbound.future.complete(null);
+                return outbound.future;
+            }
+            chat.queue.add(outbound);
+            pending++;
+            scheduleLocked(chat, 0);
+        }
+        return outbound.future;
+    }
+
+    private void scheduleLocked(ChatQueue chat, long delayNanos) {
+        if (!chat.scheduled && !chat.inFlight && !chat.queue.isEmpty()) {
+            chat.scheduled = true;
+            ready.add(new Ticket(chat, System.nanoTime() + delayNanos));
+        }
+    }
+
+    /**
+     * Thread única que decide o que pode sair agora, respeitando os baldes.
+     */
+    private void schedule() {
+        long lastCleanup = System.nanoTime();
+        while (running) {
+            try {
+                Ticket ticket = ready.poll(1, TimeUnit.SECONDS);
+                if (System.nanoTime() - lastCleanup > IDLE_CLEANUP_NANOS) {
+                    removeIdleChats();
+                    lastCleanup = System.nanoTime();
+                }
+                if (ticket == null) {
+                    continue;
+                }
+                ChatQueue chat = ticket.chat;
+                synchronized (lock) {
+                    chat.scheduled = false;
+                    long wait = Math.max(chat.bucket.nanosUntilAvailable(), chat.blockedUntil - System.nanoTime());
+                    if (wait > 0) {
+                        chat.scheduled = true;
+                        ready.add(new Ticket(chat, System.nanoTime() + wait));
+                        continue;
+                    }
+                    if (chat.inFlight || chat.queue.isEmpty()) {
+                        continue;
+                    }
+                    // Reserva o chat antes de esperar pelo balde global
+                    chat.inFlight = true;
+                }
+
+                long globalWait = Math.max(global.nanosUntilAvailable(), globalBlockedUntil - System.nanoTime());
+                if (globalWait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(globalWait);
+                }
+                global.take();
+
+                Outbound<?> outbound;
+                synchronized (lock) {
+                    chat.bucket.take();
+                    outbound = chat.queue.poll();
+                }
+                workers.execute(() -> execute(chat, outbound));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "TelegramSender scheduler error", e);
+            }
+        }
+    }
+
+    private <T extends Serializable> void execute(ChatQueue chat, Outbound<T> outbound) {
+        try {
+            long start = System.nanoTime();
+            T response = bot.execute(outbound.method);
+            sendLatency.observeNanos(System.nanoTime() - start);
+            sent.increment();
+            done(chat, () -> outbound.future.complete(response));
+        } catch (TelegramApiException e) {
+            if (isBadRequest(e) && dropMarkdown(outbound.method)) {
+                // Markdown inválido vindo do modelo: manda de novo, já, como texto puro
+                LOGGER.fine("Markdown rejected for chat " + chat.chatId + ", resending as plain text");
+                synchronized (lock) {
+                    chat.queue.addFirst(outbound);
+                    chat.inFlight = false;
+                    scheduleLocked(chat, 0);
+                }
+                return;
+            }
+            Long retryAfter = retryAfterSeconds(e);
+            if (!outbound.retry || outbound.attempts >= maxRetries || (retryAfter == null && isBadRequest(e))) {
+                failures.increment();
+                done(chat, () -> outbound.future.completeExceptionally(e));
+                return;
+            }
+            outbound.attempts++;
+            retries.increment();
+            long delayMillis = retryAfter != null
+                    ? TimeUnit.SECONDS.toMillis(retryAfter)
+                    : Math.min(MAX_BACKOFF_MILLIS, 500L << Math.min(outbound.attempts, 16));
+            LOGGER.warning("⏳ Telegram send to chat " + chat.chatId + " failed (" + e.getMessage() + "), retry "
+                    + outbound.attempts + "/" + maxRetries + " in " + delayMillis + "ms");
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            if (retryAfter != null && isGlobalFlood()) {
+                globalBlockedUntil = until;
+            }
+            synchronized (lock) {
+                chat.blockedUntil = until;
+                chat.queue.addFirst(outbound);
+                chat.inFlight = false;
+                scheduleLocked(chat, TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            done(chat, () -> outbound.future.completeExceptionally(e));
+        }
+    }
+
+    private void done(ChatQueue chat, Runnable complete) {
+        synchronized (lock) {
+            chat.inFlight = false;
+            pending--;
+            scheduleLocked(chat, 0);
+            lock.notifyAll();
+        }
+        // Completa fora do lock: os callbacks podem enfileirar mais mensagens
+        complete.run();
+    }
+
+    private void removeIdleChats() {
+        synchronized (lock) {
+            Iterator<ChatQueue> iterator = chats.values().iterator();
+            while (iterator.hasNext()) {
+                ChatQueue chat = iterator.next();
+                if (!chat.inFlight && !chat.scheduled && chat.queue.isEmpty() && chat.bucket.isFull()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Tira o parse mode de mensagens/edições com Markdown.
+     * @return false se o método não tinha Markdown
+     */
+    private static boolean dropMarkdown(BotApiMethod<?> method) {
+        if (method instanceof SendMessage && ((SendMessage) method).getParseMode() != null) {
+            ((SendMessage) method).setParseMode(null);
+            return true;
+        }
+        if (method instanceof EditMessageText && ((EditMessageText) method).getParseMode() != null) {
+            ((EditMessageText) method).setParseMode(null);
+            return true;
+        }
+        return false;
+    }
+
+    private static Long retryAfterSeconds(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof TelegramApiRequestException) {
+            TelegramApiRequestException request = (TelegramApiRequestException) cause;
+            if (request.getParameters() != null && request.getParameters().getRetryAfter() != null) {
+                return request.getParameters().getRetryAfter().longValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Erros 4xx (Markdown inválido, chat bloqueado...) não adianta repetir; 429 é tratado à parte.
+     */
+    private static boolean isBadRequest(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof TelegramApiRequestException) {
+            Integer code = ((TelegramApiRequestException) cause).getErrorCode();
+            return code != null && code >= 400 && code < 500 && code != 429;
+        }
+        return false;
+    }
+
+    /**
+     * O 429 não diz se o limite estourado foi o do chat ou o do bot. Se o balde
+     * global está vazio, o bot está no limite: todos os chats esperam.
+     */
+    private boolean isGlobalFlood() {
+        return global.nanosUntilAvailable() > 0;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof java.util.concurrent.CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private final class ChatQueue {
+        final Long chatId;
+        final ArrayDeque<Outbound<?>> queue = new ArrayDeque<>();
+        final TokenBucket bucket = new TokenBucket(perChatPerSecond, perChatBurst);
+        boolean inFlight;
+        boolean scheduled;
+        long blockedUntil;
+
+        ChatQueue(Long chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    private static final class Outbound<T extends Serializable> {
+        final BotApiMethod<T> method;
+        final boolean retry;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        int attempts;
+
+        Outbound(BotApiMethod<T> method, boolean retry) {
+            this.method = method;
+            this.retry = retry;
+        }
+    }
+
+    private static final class Ticket implements Delayed {
+        final ChatQueue chat;
+        final long readyAt;
+
+        Ticket(ChatQueue chat, long readyAt) {
+            this.chat = chat;
+            this.readyAt = readyAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((Ticket) other).readyAt);
+        }
+    }
+}
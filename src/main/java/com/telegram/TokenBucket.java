@@ -0,0 +1,63 @@
+package com.telegram;
+
+/**
+ * Balde de fichas: libera até {@code burst} operações de uma vez e depois
+ * {@code perSecond} por segundo.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double perSecond, double burst) {
+        if (perSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("perSecond deve ser > 0 e burst >= 1");
+        }
+        this.tokensPerNano = perSecond / 1_000_000_000.0;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Pega uma ficha se houver.
+     */
+    public synchronized boolean tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Pega uma ficha mesmo que o balde esteja vazio (o saldo fica negativo e
+     * as próximas esperam mais).
+     */
+    public synchronized void take() {
+        refill();
+        tokens -= 1;
+    }
+
+    /**
+     * @return quanto falta, em nanossegundos, para haver uma ficha (0 se já houver).
+     */
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,302 @@
+package com.telegram;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Distribui os updates do Telegram para um pool de workers.
+ *
+ * Cada chatId tem a sua fila serial, criada quando chega o primeiro update e
+ * removida quando esvazia, então as mensagens de um mesmo chat são processadas na
+ * ordem em que chegaram, enquanto chats diferentes rodam em paralelo. O número de
+ * updates em andamento é limitado: quando o limite é atingido, a thread de polling
+ * espera (backpressure).
+ *
+ * Tarefas assíncronas ({@link #dispatchAsync}) liberam o worker enquanto esperam
+ * o Ollama, mas a fila do chat só passa para a próxima tarefa quando o future
+ * termina. Como a fila é só daquele chat, uma geração lenta não atrasa outros chats.
+ */
+public class UpdateDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(UpdateDispatcher.class.getName());
+
+    // Quantas tarefas uma fila executa antes de devolver o worker ao pool
+    private static final int MAX_BATCH = 16;
+
+    private final ExecutorService executor;
+    private final Map<Long, SerialQueue> queues = new ConcurrentHashMap<>();
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Histogram queueTime = Histogram.latency();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean stopping;
+
+    public UpdateDispatcher(int workerThreads, int maxInFlight) {
+        if (workerThreads <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("workerThreads e maxInFlight devem ser > 0");
+        }
+        this.executor = Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory());
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        LOGGER.info("✅ UpdateDispatcher initialized - workers: " + workerThreads
+                + ", maxInFlight: " + maxInFlight);
+    }
+
+    public UpdateDispatcher(Config.DispatcherConfig config) {
+        this(config.getWorkerThreads(), config.getMaxInFlight());
+    }
+
+    /**
+     * Enfileira uma tarefa para o chat informado.
+     * Bloqueia quem chamou enquanto o limite de updates em andamento estiver cheio.
+     * @param chatId O ID do chat (define a fila serial).
+     * @param task A tarefa a ser executada.
+     * @return false se a tarefa não foi aceita (dispatcher parado ou thread interrompida).
+     */
+    public boolean dispatch(long chatId, Runnable task) {
+        return dispatchAsync(chatId, () -> {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Como {@link #dispatch}, mas a tarefa devolve um future: a próxima tarefa do
+     * mesmo chat só começa quando ele terminar, sem ocupar um worker na espera.
+     */
+    public boolean dispatchAsync(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        if (!acquire(chatId)) {
+            return false;
+        }
+        enqueue(chatId, task);
+        return true;
+    }
+
+    /**
+     * Como {@link #dispatchAsync}, mas nunca bloqueia: com o limite de updates em
+     * andamento cheio, recusa na hora. Para quem chama de uma thread compartilhada
+     * (ex.: o timer do {@link ChatScheduler}), que não pode ficar parada esperando vaga.
+     * @return false se a tarefa não foi aceita (limite cheio ou dispatcher parado).
+     */
+    public boolean tryDispatchAsync(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        if (stopping || !inFlight.tryAcquire()) {
+            LOGGER.warning("⏳ " + maxInFlight + " updates in flight, rejecting update for chat " + chatId);
+            return false;
+        }
+        enqueue(chatId, task);
+        return true;
+    }
+
+    private void enqueue(long chatId, Supplier<? extends CompletionStage<?>> task) {
+        long enqueuedAt = System.nanoTime();
+        Supplier<CompletionStage<?>> queued = () -> {
+            queueTime.observeNanos(System.nanoTime() - enqueuedAt);
+            CompletionStage<?> stage;
+            try {
+                stage = task.get();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "❌ Error processing update for chat " + chatId, e);
+                errors.increment();
+                stage = CompletableFuture.completedFuture(null);
+            }
+            return stage.whenComplete((result, error) -> {
+                if (error != null) {
+                    LOGGER.log(Level.SEVERE, "❌ Error processing update for chat " + chatId, error);
+                    errors.increment();
+                }
+                inFlight.release();
+            });
+        };
+        // Adiciona dentro do compute: release() só remove a fila vazia sob o mesmo lock
+        SerialQueue queue = queues.compute(chatId, (id, existing) -> {
+            SerialQueue target = existing != null ? existing : new SerialQueue(id);
+            target.tasks.add(queued);
+            return target;
+        });
+        queue.schedule();
+    }
+
+    /**
+     * Executa a tarefa no pool sem passar pela fila do chat: para comandos que
+     * não devem esperar as mensagens do chat que estão na frente. Conta no mesmo
+     * limite de updates em andamento.
+     */
+    public boolean dispatchUnordered(long chatId, Runnable task) {
+        if (!acquire(chatId)) {
+            return false;
+        }
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueTime.observeNanos(System.nanoTime() - enqueuedAt);
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "❌ Error processing update for chat " + chatId, e);
+                    errors.increment();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            LOGGER.warning("⚠️ Dispatcher stopped, dropping update for chat " + chatId);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean acquire(long chatId) {
+        if (stopping) {
+            LOGGER.warning("⚠️ Dispatcher stopped, dropping update for chat " + chatId);
+            return false;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            LOGGER.warning("⏳ " + maxInFlight + " updates in flight, waiting for a free slot...");
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Tempo entre o update chegar e começar a ser processado (espera na fila do chat), em segundos.
+     */
+    public Histogram getQueueTime() {
+        return queueTime;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Chats com updates na fila ou em andamento.
+     */
+    public int getActiveChats() {
+        return queues.size();
+    }
+
+    /**
+     * Para de aceitar updates e espera os que estão em andamento terminarem.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        stopping = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            // Tarefas assíncronas não aparecem no executor: espera pelos permits
+            if (inFlight.tryAcquire(maxInFlight, timeout, unit)) {
+                inFlight.release(maxInFlight);
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                LOGGER.warning("⚠️ Dispatcher did not finish in time, forcing shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fila de um chat: executa suas tarefas uma de cada vez, no pool compartilhado.
+     */
+    private final class SerialQueue {
+        private final long chatId;
+        private final Queue<Supplier<CompletionStage<?>>> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        SerialQueue(long chatId) {
+            this.chatId = chatId;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    LOGGER.warning("⚠️ Dispatcher stopped, " + tasks.size() + " queued updates discarded");
+                    while (tasks.poll() != null) {
+                        inFlight.release();
+                    }
+                    queues.remove(chatId, this);
+                }
+            }
+        }
+
+        private void drain() {
+            int executed = 0;
+            Supplier<CompletionStage<?>> task;
+            while (executed < MAX_BATCH && (task = tasks.poll()) != null) {
+                CompletableFuture<?> pending = task.get().toCompletableFuture();
+                executed++;
+                if (!pending.isDone()) {
+                    // A fila do chat continua "ocupada" até a tarefa assíncrona terminar
+                    pending.whenComplete((result, error) -> resume());
+                    return;
+                }
+            }
+            release();
+        }
+
+        private void resume() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                release();
+            }
+        }
+
+        private void release() {
+            scheduled.set(false);
+            // Pode ter chegado tarefa entre o último poll e o set(false)
+            if (!tasks.isEmpty()) {
+                schedule();
+                return;
+            }
+            // Vazia: sai do mapa, a menos que enqueue tenha acabado de pôr (e agendar)
+            // uma tarefa nela; quem pôs a tarefa chama schedule() em seguida
+            queues.computeIfPresent(chatId,
+                    (id, queue) -> queue == this && tasks.isEmpty() && !scheduled.get() ? null : queue);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "update-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.telegram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recebe os updates que o Telegram empurra por webhook, no lugar do long polling.
+ *
+ * Servidor HTTP embutido (o do JDK) que aceita {@code POST} no path configurado,
+ * confere o header {@code X-Telegram-Bot-Api-Secret-Token} e entrega o {@link Update}
+ * para o mesmo tratamento do polling ({@link TelegramBot#onUpdateReceived}). O TLS
+ * fica no proxy/load balancer na frente do bot.
+ *
+ * Só responde 200 depois de enfileirar o update: se o dispatcher estiver cheio, a
+ * resposta atrasa e o Telegram segura os próximos (backpressure). Um update que
+ * falha ao ser lido responde 400 e não é reenviado.
+ */
+public class WebhookServer {
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookServer.class.getName());
+
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    // Maior corpo lido numa recusa só para manter a conexão keep-alive aberta
+    static final long MAX_DRAIN_BYTES = 8 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Consumer<Update> handler;
+    private final byte[] secretToken;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public WebhookServer(Config.WebhookConfig config, Consumer<Update> handler) {
+        this.handler = handler;
+        this.secretToken = config.getSecretToken().getBytes(StandardCharsets.UTF_8);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("❌ Não foi possível abrir a porta do webhook "
+                    + config.getHost() + ":" + config.getPort() + ": " + e.getMessage(), e);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getThreads(), r -> {
+            Thread thread = new Thread(r, "webhook-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext(config.getPath(), this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        LOGGER.info("✅ WebhookServer listening on " + config.getHost() + ":" + getPort() + config.getPath());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getReceived() { return received.sum(); }
+    public long getRejected() { return rejected.sum(); }
+
+    public void writeMetrics(MetricsWriter out) {
+        out.counter("webhook_updates_total", "Updates received by webhook.", getReceived())
+                .counter("webhook_rejected_total", "Webhook requests rejected (secret, method or body).", getRejected());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reject(exchange, 405);
+                return;
+            }
+            String secret = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+            // Comparação em tempo constante, para não vazar o token pelo tempo de resposta
+            if (secret == null || !MessageDigest.isEqual(secretToken, secret.getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.warning("🚫 Webhook call with invalid secret from " + exchange.getRemoteAddress());
+                reject(exchange, 401);
+                return;
+            }
+            Update update;
+            try {
+                update = mapper.readValue(body.readAllBytes(), Update.class);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "❌ Invalid update received by webhook", e);
+                // O corpo já foi lido todo: a conexão continua utilizável
+                rejected.increment();
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            received.increment();
+            handler.accept(update);
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private void reject(HttpExchange exchange, int status) throws IOException {
+        rejected.increment();
+        // Sem ler o resto do corpo o HttpServer fecha a conexão keep-alive que o cliente vai
+        // reaproveitar. Mas o secret ainda não foi conferido: só vale ler um corpo pequeno e
+        // de tamanho declarado, senão qualquer um prende as threads do webhook mandando um
+        // corpo sem fim. Nesse caso responde já e a conexão fecha depois da resposta.
+        if (isSmallBody(exchange)) {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        } else {
+            exchange.getResponseHeaders().set("Connection", "close");
+        }
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static boolean isSmallBody(HttpExchange exchange) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(length.trim()) <= MAX_DRAIN_BYTES;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,289 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChatMemoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsOnlyMostRecentMessages() {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setMaxMessages(4);
+        ChatMemory memory = new ChatMemory(config);
+        for (int i = 0; i < 10; i++) {
+            memory.addMessage(1L, i % 2 == 0 ? "user" : "assistant", "m" + i);
+        }
+
+        List<ChatMessage> history = memory.getHistory(1L);
+        assertEquals(4, history.size());
+        assertEquals("m6", history.get(0).content());
+        assertEquals("m9", history.get(3).content());
+        memory.close();
+    }
+
+    @Test
+    public void trimsToTokenBudget() {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setMaxHistoryTokens(60);
+        ChatMemory memory = new ChatMemory(config);
+        String longText = "x".repeat(100); // ~26 tokens
+        for (int i = 0; i < 5; i++) {
+            memory.addMessage(1L, "user", longText);
+        }
+
+        assertEquals(2, memory.getHistory(1L).size());
+        assertEquals(memory.getHistory(1L).size() * (100 / 4 + 1), memory.getTotalTokens());
+        memory.close();
+    }
+
+    @Test
+    public void historyIsASnapshot() {
+        ChatMemory memory = new ChatMemory();
+        memory.addMessage(1L, "user", "oi");
+        List<ChatMessage> history = memory.getHistory(1L);
+        memory.addMessage(1L, "assistant", "olá");
+
+        assertEquals(1, history.size());
+        assertEquals(2, memory.getHistory(1L).size());
+        memory.close();
+    }
+
+    @Test
+    public void evictsLeastRecentChatsOverGlobalCap() throws Exception {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setMaxTotalTokens(100);
+        ChatMemory memory = new ChatMemory(config);
+        for (long chat = 0; chat < 10; chat++) {
+            memory.addMessage(chat, "user", "y".repeat(76)); // 20 tokens
+            Thread.sleep(2);
+        }
+        memory.sweep();
+
+        assertTrue(memory.getTotalTokens() <= 100);
+        assertTrue(memory.getHistory(0L).isEmpty());
+        assertEquals(1, memory.getHistory(9L).size());
+        memory.close();
+    }
+
+    @Test
+    public void restoresHistoryAfterRestart() throws Exception {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setPersistent(true);
+        config.setDirectory(folder.getRoot().getPath());
+        config.setSegmentSizeMb(1);
+
+        ChatMemory memory = new ChatMemory(config);
+        for (int i = 0; i < 30; i++) {
+            memory.addMessage(1L, "user", "pergunta " + i);
+            memory.addMessage(1L, "assistant", "resposta " + i);
+        }
+        memory.addMessage(2L, "user", "vai ser apagada");
+        memory.clearHistory(2L);
+        memory.addMessage(3L, "user", "ação ✓");
+        List<ChatMessage> before = memory.getHistory(1L);
+        memory.close();
+
+        // Segunda subida: snapshot do close() + log vazio
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(before, restored.getHistory(1L));
+        assertTrue(restored.getHistory(2L).isEmpty());
+        assertEquals("ação ✓", restored.getHistory(3L).get(0).content());
+
+        // Mudanças depois do snapshot vêm só do log
+        restored.addMessage(3L, "assistant", "ok");
+        restored.clearHistory(1L);
+        restored.close();
+
+        ChatMemory again = new ChatMemory(config);
+        assertTrue(again.getHistory(1L).isEmpty());
+        assertEquals(2, again.getHistory(3L).size());
+        again.close();
+    }
+
+    @Test
+    public void summaryReplacesOldestMessages() throws Exception {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setPersistent(true);
+        config.setDirectory(folder.getRoot().getPath());
+        ChatMemory memory = new ChatMemory(config);
+        for (int i = 0; i < 6; i++) {
+            memory.addMessage(1L, i % 2 == 0 ? "user" : "assistant", "m" + i);
+        }
+
+        ChatMemory.Compaction compaction = memory.beginCompaction(1L, 2);
+        assertEquals(4, compaction.getMessages().size());
+        // Mensagens novas no fim não invalidam o resumo
+        memory.addMessage(1L, "user", "m6");
+        assertTrue(memory.completeCompaction(compaction, new ChatMessage(ChatMessage.Role.SYSTEM, "resumo")));
+
+        List<ChatMessage> history = memory.getHistory(1L);
+        assertEquals(List.of("resumo", "m4", "m5", "m6"), history.stream().map(ChatMessage::content).toList());
+
+        // Um segundo resumo do mesmo trecho é recusado: o começo já mudou
+        assertFalse(memory.completeCompaction(compaction, new ChatMessage(ChatMessage.Role.SYSTEM, "outro")));
+        memory.close();
+
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(history, restored.getHistory(1L));
+        restored.close();
+    }
+
+    private Config.MemoryConfig persistentConfig() {
+        Config.MemoryConfig config = new Config.MemoryConfig();
+        config.setPersistent(true);
+        config.setDirectory(folder.getRoot().getPath());
+        config.setSegmentSizeMb(1);
+        config.setMaxMessages(100);
+        config.setMaxHistoryTokens(10_000_000);
+        // Sem snapshot periódico: o que não passou por close() só existe no log
+        config.setSnapshotIntervalSeconds(0);
+        return config;
+    }
+
+    /**
+     * Espera a thread de escrita gravar {@code events} eventos, lendo o diretório
+     * como uma subida leria.
+     */
+    private void awaitJournal(int events) throws Exception {
+        AtomicInteger read = new AtomicInteger();
+        ChatJournal.Replay counter = new ChatJournal.Replay() {
+            @Override public void add(long chatId, long seq, ChatMessage message) { read.incrementAndGet(); }
+            @Override public void clear(long chatId, long seq)                   { read.incrementAndGet(); }
+            @Override public void summarize(long chatId, long seq, int replaced, ChatMessage summary) { read.incrementAndGet(); }
+        };
+        for (int i = 0; i < 250; i++) {
+            read.set(0);
+            new ChatJournal(folder.getRoot().toPath(), 0, 0).recover(counter);
+            if (read.get() >= events) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("journal gravou " + read.get() + " de " + events + " eventos");
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    @Test
+    public void restoresFromLogAfterCrash() throws Exception {
+        Config.MemoryConfig config = persistentConfig();
+        // Nunca fechada, como num kill -9: não há snapshot, só o log
+        ChatMemory crashed = new ChatMemory(config);
+        crashed.addMessage(1L, "user", "quanto é 2+2?");
+        crashed.addMessage(1L, "assistant", "4");
+        crashed.addMessage(2L, "user", "vai ser apagada");
+        crashed.clearHistory(2L);
+        awaitJournal(4);
+        assertEquals(List.of(), files("snapshot-"));
+
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(crashed.getHistory(1L), restored.getHistory(1L));
+        assertTrue(restored.getHistory(2L).isEmpty());
+        restored.close();
+    }
+
+    @Test
+    public void dropsCorruptTailRecord() throws Exception {
+        Config.MemoryConfig config = persistentConfig();
+        ChatMemory crashed = new ChatMemory(config);
+        crashed.addMessage(1L, "user", "primeira");
+        crashed.addMessage(1L, "assistant", "segunda");
+        crashed.addMessage(1L, "user", "terceira, gravada pela metade");
+        awaitJournal(3);
+
+        // Estraga um byte do último registro: o CRC não bate mais
+        Path segment = folder.getRoot().toPath().resolve(files("segment-").get(0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            String content = StandardCharsets.ISO_8859_1.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                    .toString();
+            channel.write(ByteBuffer.wrap(new byte[] {'T'}), content.indexOf("terceira"));
+        }
+
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(List.of("primeira", "segunda"),
+                restored.getHistory(1L).stream().map(ChatMessage::content).toList());
+
+        // O registro estragado não volta em subidas seguintes
+        restored.addMessage(1L, "user", "quarta");
+        restored.close();
+        ChatMemory again = new ChatMemory(config);
+        assertEquals(List.of("primeira", "segunda", "quarta"),
+                again.getHistory(1L).stream().map(ChatMessage::content).toList());
+        again.close();
+    }
+
+    @Test
+    public void replaysAcrossSegmentRoll() throws Exception {
+        Config.MemoryConfig config = persistentConfig();
+        ChatMemory crashed = new ChatMemory(config);
+        // 12 × 100 KB não cabem num segmento de 1 MB
+        for (int i = 0; i < 12; i++) {
+            crashed.addMessage(1L, i % 2 == 0 ? "user" : "assistant", i + "x".repeat(100 * 1024));
+        }
+        awaitJournal(12);
+        assertEquals(2, files("segment-").size());
+
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(crashed.getHistory(1L), restored.getHistory(1L));
+        restored.close();
+    }
+
+    @Test
+    public void snapshotDeletesOldSegments() throws Exception {
+        Config.MemoryConfig config = persistentConfig();
+        ChatMemory memory = new ChatMemory(config);
+        for (int i = 0; i < 12; i++) {
+            memory.addMessage(1L, i % 2 == 0 ? "user" : "assistant", i + "x".repeat(100 * 1024));
+        }
+        List<ChatMessage> before = memory.getHistory(1L);
+        memory.close();
+
+        // O snapshot do close() cobre os dois segmentos cheios; sobra só o novo, vazio
+        assertEquals(List.of("snapshot-000000000002.snap"), files("snapshot-"));
+        assertEquals(List.of("segment-000000000002.log"), files("segment-"));
+
+        ChatMemory restored = new ChatMemory(config);
+        assertEquals(before, restored.getHistory(1L));
+        restored.close();
+    }
+
+    @Test
+    public void reportsWriterFailure() throws Exception {
+        ChatJournal journal = new ChatJournal(folder.getRoot().toPath(), 1024, 0);
+        journal.start(visitor -> {
+            throw new IOException("disco cheio");
+        });
+        journal.appendAdd(1L, new ChatMessage(ChatMessage.Role.USER, "oi"));
+        assertFalse(journal.isFailed());
+
+        // O snapshot do close() falha e derruba a thread de escrita
+        journal.close();
+        assertTrue(journal.isFailed());
+        journal.appendAdd(1L, new ChatMessage(ChatMessage.Role.USER, "perdida"));
+        assertEquals(0, journal.getPending());
+    }
+}
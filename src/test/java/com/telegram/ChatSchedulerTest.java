@@ -0,0 +1,148 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ChatSchedulerTest {
+
+    private static ChatScheduler scheduler(double perMinute, int burst, int maxPending) {
+        return scheduler(perMinute, burst, maxPending, 0);
+    }
+
+    private static ChatScheduler scheduler(double perMinute, int burst, int maxPending, long coalesceWindowMs) {
+        Config.SchedulerConfig config = new Config.SchedulerConfig();
+        config.setCoalesceWindowMs(coalesceWindowMs);
+        config.setPerChatQuestionsPerMinute(perMinute);
+        config.setPerChatBurst(burst);
+        config.setMaxPendingPerChat(maxPending);
+        config.setChatWeights(Map.of(7L, 3.0));
+        return new ChatScheduler(config);
+    }
+
+    @Test
+    public void mergesIntoPendingQuestionUntilItStarts() {
+        ChatScheduler scheduler = scheduler(600, 10, 1);
+
+        ChatScheduler.Admission first = scheduler.admit(1, "quanto é");
+        ChatScheduler.Admission second = scheduler.admit(1, "2 + 2?");
+
+        assertEquals(ChatScheduler.Outcome.ACCEPTED, first.getOutcome());
+        assertEquals(ChatScheduler.Outcome.MERGED, second.getOutcome());
+        assertSame(first.getTurn(), second.getTurn());
+        assertEquals("quanto é\n2 + 2?", first.getTurn().start());
+
+        // Depois de começar, a próxima mensagem vira outra pergunta
+        assertEquals(ChatScheduler.Outcome.ACCEPTED, scheduler.admit(1, "e 3 + 3?").getOutcome());
+        assertEquals(1, scheduler.getMerged());
+        assertEquals(2, scheduler.getAccepted());
+    }
+
+    @Test
+    public void coalescesMessagesWithinWindowIntoOneQuestion() throws Exception {
+        ChatScheduler scheduler = scheduler(600, 10, 5, 200);
+        try {
+            ChatScheduler.Admission first = scheduler.admit(1, "tenho uma equação");
+            CompletableFuture<String> dispatched = new CompletableFuture<>();
+            scheduler.whenReady(first.getTurn(), () -> dispatched.complete(first.getTurn().start()));
+            ChatScheduler.Admission second = scheduler.admit(1, "x^2 - 4 = 0");
+            ChatScheduler.Admission third = scheduler.admit(1, "como resolvo?");
+
+            // Mesmo com vagas sobrando, as mensagens da janela viram uma pergunta só
+            assertEquals(ChatScheduler.Outcome.MERGED, second.getOutcome());
+            assertEquals(ChatScheduler.Outcome.MERGED, third.getOutcome());
+            assertFalse(dispatched.isDone());
+            assertEquals("tenho uma equação\nx^2 - 4 = 0\ncomo resolvo?", dispatched.get(2, TimeUnit.SECONDS));
+            assertEquals(2, scheduler.getCoalesced());
+
+            // Depois da janela, a próxima mensagem é outra pergunta
+            assertEquals(ChatScheduler.Outcome.ACCEPTED, scheduler.admit(1, "e x^2 = 9?").getOutcome());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void clearDropsQuestionQueuedBehindRunningOne() throws Exception {
+        ChatScheduler scheduler = scheduler(600, 10, 1);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(2, 16);
+        CompletableFuture<Void> running = new CompletableFuture<>();
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> queuedRan = new CompletableFuture<>();
+
+        // Uma resposta em andamento segura a fila do chat; a pergunta seguinte espera atrás dela
+        dispatcher.dispatchAsync(1L, () -> running);
+        ChatScheduler.Turn queued = scheduler.admit(1, "pergunta antiga").getTurn();
+        scheduler.whenReady(queued, () -> dispatcher.dispatchAsync(1L, () -> {
+            started.add(String.valueOf(queued.start()));
+            queuedRan.complete(null);
+            return queuedRan;
+        }));
+
+        scheduler.clear(1);
+        running.complete(null);
+        queuedRan.get(2, TimeUnit.SECONDS);
+
+        // A pergunta de antes do /clear não chega ao modelo nem ao histórico
+        assertEquals(List.of("null"), started);
+        ChatScheduler.Admission next = scheduler.admit(1, "pergunta nova");
+        assertEquals(ChatScheduler.Outcome.ACCEPTED, next.getOutcome());
+        assertEquals("pergunta nova", next.getTurn().start());
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void clearClosesOpenCoalescingWindow() throws Exception {
+        ChatScheduler scheduler = scheduler(600, 10, 1, 100);
+        try {
+            ChatScheduler.Turn turn = scheduler.admit(1, "quanto é").getTurn();
+            List<String> dispatched = new CopyOnWriteArrayList<>();
+            scheduler.whenReady(turn, () -> dispatched.add("despachada"));
+
+            scheduler.clear(1);
+            Thread.sleep(300);
+
+            assertTrue(dispatched.isEmpty());
+            assertNull(turn.start());
+            assertEquals(ChatScheduler.Outcome.ACCEPTED, scheduler.admit(1, "2 + 2?").getOutcome());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsBeyondRateWithThrottledNotice() {
+        ChatScheduler scheduler = scheduler(1, 1, 1);
+
+        scheduler.admit(1, "primeira").getTurn().start();
+        ChatScheduler.Admission rejected = scheduler.admit(1, "segunda");
+        ChatScheduler.Admission again = scheduler.admit(1, "terceira");
+
+        assertEquals(ChatScheduler.Outcome.REJECTED, rejected.getOutcome());
+        assertNull(rejected.getTurn());
+        assertTrue(rejected.shouldNotify());
+        assertFalse(again.shouldNotify());
+        assertEquals(2, scheduler.getRejected());
+
+        // O limite é por chat
+        assertEquals(ChatScheduler.Outcome.ACCEPTED, scheduler.admit(2, "outro chat").getOutcome());
+    }
+
+    @Test
+    public void flowCarriesConfiguredWeight() {
+        ChatScheduler scheduler = scheduler(20, 5, 1);
+
+        assertEquals(new RequestLimiter.Flow(7L, 3.0), scheduler.flowOf(7));
+        assertEquals(new RequestLimiter.Flow(8L, 1.0), scheduler.flowOf(8));
+    }
+}
@@ -0,0 +1,113 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HistorySummarizerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    private HttpServer ollama;
+    private OllamaClient client;
+    private ChatMemory memory;
+    private HistorySummarizer summarizer;
+
+    @Before
+    public void setUp() throws IOException {
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/chat", this::chat);
+        ollama.start();
+        Config.OllamaConfig ollamaConfig = new Config.OllamaConfig();
+        ollamaConfig.setBaseUrl("http://127.0.0.1:" + ollama.getAddress().getPort());
+        ollamaConfig.setModel("qwen3:0.6b");
+        ollamaConfig.setMaxConcurrentRequests(1);
+        ollamaConfig.setHealthCheckIntervalSeconds(0);
+        client = new OllamaClient(ollamaConfig);
+        memory = new ChatMemory();
+
+        Config.SummarizationConfig config = new Config.SummarizationConfig();
+        config.setTriggerTokens(100);
+        config.setKeepRecentMessages(2);
+        summarizer = new HistorySummarizer(client, memory, config);
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.add(mapper.readTree(exchange.getRequestBody()));
+            byte[] body = "{\"message\":{\"role\":\"assistant\",\"content\":\"Aluno estuda equações.\"},\"done\":true}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        memory.close();
+        ollama.stop(0);
+    }
+
+    private void fillHistory() {
+        for (int i = 0; i < 6; i++) {
+            memory.addMessage(1L, i % 2 == 0 ? "user" : "assistant", "m" + i + " " + "x".repeat(100));
+        }
+    }
+
+    @Test
+    public void replacesOldestMessagesWithSummary() throws Exception {
+        fillHistory();
+        int before = memory.getHistoryTokens(1L);
+
+        summarizer.maybeSummarize(1L);
+        for (int i = 0; i < 100 && summarizer.getSummaries() == 0; i++) {
+            Thread.sleep(50);
+        }
+
+        // As 4 mais antigas viram um resumo; as 2 últimas ficam como estão
+        List<ChatMessage> history = memory.getHistory(1L);
+        assertEquals(1, summarizer.getSummaries());
+        assertEquals(3, history.size());
+        assertEquals(ChatMessage.Role.SYSTEM, history.get(0).role());
+        assertEquals("Resumo da conversa até aqui: Aluno estuda equações.", history.get(0).content());
+        assertTrue(history.get(1).content().startsWith("m4 "));
+        assertTrue(history.get(2).content().startsWith("m5 "));
+        assertEquals(before - memory.getHistoryTokens(1L), summarizer.getTokensSaved());
+        assertTrue(requests.get(0).path("messages").path(1).path("content").asText().startsWith("Aluno: m0 "));
+    }
+
+    @Test
+    public void skipsWhileQuestionsAreQueued() throws Exception {
+        fillHistory();
+        CompletableFuture<String> running = client.getLimiter().submit(CompletableFuture::new);
+        CompletableFuture<String> queued = client.getLimiter().submit(CompletableFuture::new);
+
+        summarizer.maybeSummarize(1L);
+        Thread.sleep(200);
+
+        assertEquals(0, requests.size());
+        assertEquals(0, summarizer.getSummaries());
+        assertEquals(6, memory.getHistory(1L).size());
+        queued.cancel(true);
+        running.cancel(true);
+    }
+}
@@ -0,0 +1,80 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HnswIndexTest {
+
+    @Test
+    public void findsExactVector() {
+        HnswIndex index = new HnswIndex(8, 50);
+        Random random = new Random(1);
+        float[][] vectors = randomVectors(random, 500, 32);
+        for (float[] v : vectors) {
+            index.add(v);
+        }
+
+        List<HnswIndex.Neighbor> result = index.search(vectors[123], 1, 50);
+        assertEquals(123, result.get(0).id);
+        assertEquals(1.0f, result.get(0).similarity, 1e-4f);
+    }
+
+    @Test
+    public void recallAgainstBruteForce() {
+        HnswIndex index = new HnswIndex(16, 100);
+        Random random = new Random(7);
+        float[][] vectors = randomVectors(random, 2000, 24);
+        for (float[] v : vectors) {
+            index.add(v);
+        }
+
+        int found = 0;
+        int queries = 200;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVectors(random, 1, 24)[0];
+            int expected = bruteForceNearest(vectors, query);
+            if (index.search(query, 1, 64).get(0).id == expected) {
+                found++;
+            }
+        }
+        assertTrue("recall too low: " + found + "/" + queries, found >= queries * 0.9);
+    }
+
+    private static int bruteForceNearest(float[][] vectors, float[] query) {
+        int best = -1;
+        double bestSimilarity = -2;
+        for (int i = 0; i < vectors.length; i++) {
+            double similarity = cosine(vectors[i], query);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+
+    private static float[][] randomVectors(Random random, int count, int dimension) {
+        float[][] vectors = new float[count][dimension];
+        for (float[] v : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                v[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,59 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MathEngineTest {
+
+    private final MathEngine engine = new MathEngine();
+
+    @Test
+    public void arithmeticWithPrecedence() {
+        assertEquals("🧮 2 + 2 × 3 = 8", engine.tryAnswer("2+2*3"));
+        assertEquals("🧮 2(3 + 4) = 14", engine.tryAnswer("2(3+4)"));
+        assertEquals("🧮 0,1 + 0,2 = 0,3", engine.tryAnswer("0,1 + 0,2"));
+        assertEquals("🧮 5! = 120", engine.tryAnswer("5!"));
+        // Pequeno demais para 10 casas: não pode virar "0"
+        assertEquals("🧮 2^-40 = 9,094947018E-13", engine.tryAnswer("2^-40"));
+        assertEquals("🧮 1 ÷ 2000000 = 5E-7", engine.tryAnswer("1/2000000"));
+    }
+
+    @Test
+    public void portuguesePhrasing() {
+        assertEquals("🧮 √144 = 12", engine.tryAnswer("raiz de 144"));
+        assertEquals("🧮 7 × 8 = 56", engine.tryAnswer("Quanto é 7 vezes 8?"));
+        assertEquals("🧮 2^10 = 1024", engine.tryAnswer("quanto é 2 elevado a 10"));
+        assertEquals("🧮 15 ÷ 100 × 200 = 30", engine.tryAnswer("Quanto é 15% de 200?"));
+        assertEquals("🧮 log 1000 = 3", engine.tryAnswer("log de 1000"));
+    }
+
+    @Test
+    public void trigonometryNeedsAngleUnit() {
+        assertEquals("🧮 sen 30° = 0,5", engine.tryAnswer("sen 30°"));
+        assertEquals("🧮 cos 60° = 0,5", engine.tryAnswer("cosseno de 60 graus"));
+        assertNull(engine.tryAnswer("seno de 30"));
+        assertNull(engine.tryAnswer("tg 90°"));
+    }
+
+    @Test
+    public void solvesLinearEquations() {
+        String answer = engine.tryAnswer("Resolva: 3x + 6 = 0");
+        assertTrue(answer, answer.endsWith("*x = -2*"));
+        assertTrue(engine.tryAnswer("x/2 = 4").endsWith("*x = 8*"));
+        assertTrue(engine.tryAnswer("x + 1 = x").contains("não há solução"));
+        assertNull(engine.tryAnswer("x^2 = 4"));
+    }
+
+    @Test
+    public void leavesEverythingElseToTheModel() {
+        assertNull(engine.tryAnswer("Como transformar 0,75 em fração?"));
+        assertNull(engine.tryAnswer("o que é um número primo"));
+        assertNull(engine.tryAnswer("5"));
+        assertNull(engine.tryAnswer("3 5"));
+        assertNull(engine.tryAnswer("2 e 3"));
+        assertNull(engine.tryAnswer("2+2=5"));
+    }
+}
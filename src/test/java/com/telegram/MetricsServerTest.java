@@ -0,0 +1,74 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.Test;
+
+public class MetricsServerTest {
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        Histogram histogram = new Histogram(0.1, 1, 10);
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.5);
+        histogram.observe(42);
+
+        String text = new MetricsWriter().histogram("test_seconds", "Test.", histogram).toString();
+
+        assertTrue(text.contains("# TYPE mathbot_test_seconds histogram\n"));
+        assertTrue(text.contains("mathbot_test_seconds_bucket{le=\"0.1\"} 2\n"));
+        assertTrue(text.contains("mathbot_test_seconds_bucket{le=\"1\"} 3\n"));
+        assertTrue(text.contains("mathbot_test_seconds_bucket{le=\"10\"} 3\n"));
+        assertTrue(text.contains("mathbot_test_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("mathbot_test_seconds_sum 42.65\n"));
+        assertTrue(text.contains("mathbot_test_seconds_count 4\n"));
+    }
+
+    @Test
+    public void servesMetricsOverHttp() throws Exception {
+        Config.MetricsConfig config = new Config.MetricsConfig();
+        config.setPort(0);
+        MetricsServer server = new MetricsServer(config,
+                out -> out.counter("requests_total", "Requests.", 7),
+                out -> out.gauge("active_chats", "Chats.", 3));
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            assertTrue(response.body().contains("mathbot_requests_total 7\n"));
+            assertTrue(response.body().contains("# TYPE mathbot_active_chats gauge\nmathbot_active_chats 3\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void readyReflectsReadiness() throws Exception {
+        Config.MetricsConfig config = new Config.MetricsConfig();
+        config.setPort(0);
+        MetricsServer server = new MetricsServer(config);
+        boolean[] ready = {false};
+        server.setReadiness(() -> ready[0]);
+        try {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://127.0.0.1:" + server.getPort() + "/ready")).build();
+            HttpClient client = HttpClient.newHttpClient();
+
+            assertEquals(503, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+            ready[0] = true;
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class ModelRouterTest {
+
+    private static ModelRouter router(Config.RouteConfig... routes) {
+        Config.RoutingConfig config = new Config.RoutingConfig();
+        config.setEnabled(true);
+        config.setRoutes(List.of(routes));
+        return new ModelRouter(config);
+    }
+
+    @Test
+    public void simpleQuestionsScoreLowerThanHardOnes() {
+        int simple = ModelRouter.score(List.of(), "Quanto é 7 vezes 8?");
+        int hard = ModelRouter.score(List.of(),
+                "Demonstre por indução que a soma dos n primeiros ímpares é n^2 e explique por que isso vale.");
+
+        assertTrue("simples: " + simple, simple <= 10);
+        assertTrue("difícil: " + hard, hard >= 50);
+    }
+
+    @Test
+    public void picksFirstRouteCoveringTheScore() {
+        ModelRouter router = router(
+                new Config.RouteConfig("small", "qwen3:0.6b", 30),
+                new Config.RouteConfig("large", "qwen3:8b", Integer.MAX_VALUE));
+
+        assertEquals("small", router.route(List.of(), "Qual é o dobro de 21?").getName());
+        assertEquals("large", router.route(List.of(),
+                "Calcule a integral de x*sin(x) e justifique cada passo; depois compare com a derivada.").getName());
+    }
+
+    @Test
+    public void fallsBackToLastRouteWhenNoneCovers() {
+        ModelRouter router = router(
+                new Config.RouteConfig("tiny", "a", 0),
+                new Config.RouteConfig("small", "b", 5));
+
+        assertEquals("small", router.route(List.of(), "Explique o teorema de Pitágoras com um exemplo").getName());
+    }
+
+    @Test
+    public void tracksRequestsAndErrorsPerRoute() {
+        ModelRouter router = router(
+                new Config.RouteConfig("small", "qwen3:0.6b", 30),
+                new Config.RouteConfig("large", "qwen3:8b", Integer.MAX_VALUE));
+        ModelRouter.Route small = router.getRoutes().get(0);
+
+        router.track(small, CompletableFuture.completedFuture("ok"));
+        router.track(small, CompletableFuture.failedFuture(new OllamaException("falhou")));
+        CompletableFuture<String> cancelled = router.track(small, new CompletableFuture<>());
+        cancelled.cancel(true);
+
+        String text = writeMetrics(router);
+        assertEquals(3, small.getRequests());
+        assertEquals(1, small.getErrors());
+        assertTrue(text.contains("mathbot_route_requests_total{route=\"small\"} 3\n"));
+        assertTrue(text.contains("mathbot_route_requests_total{route=\"large\"} 0\n"));
+        assertTrue(text.contains("mathbot_route_errors_total{route=\"small\"} 1\n"));
+        assertTrue(text.contains("mathbot_route_response_seconds_count{route=\"small\"} 1\n"));
+        assertTrue(text.contains("mathbot_route_response_seconds_bucket{route=\"large\",le=\"+Inf\"} 0\n"));
+    }
+
+    private static String writeMetrics(ModelRouter router) {
+        MetricsWriter out = new MetricsWriter();
+        router.writeMetrics(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ModelWarmerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+    private HttpServer ollama;
+    private OllamaClient client;
+
+    private ModelWarmer start(String... models) throws IOException {
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/chat", this::chat);
+        ollama.start();
+        Config.OllamaConfig config = new Config.OllamaConfig();
+        config.setBaseUrl("http://127.0.0.1:" + ollama.getAddress().getPort());
+        config.setModel(models[0]);
+        config.setHealthCheckIntervalSeconds(0);
+        client = new OllamaClient(config);
+        return new ModelWarmer(client, List.of(models), new Config.WarmUpConfig());
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.add(mapper.readTree(exchange.getRequestBody()));
+            byte[] body = ("{\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,"
+                    + "\"load_duration\":2000000000}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        ollama.stop(0);
+    }
+
+    @Test
+    public void readyOnlyAfterEveryModelIsLoadedWithThePrompt() throws Exception {
+        ModelWarmer warmer = start("qwen3:0.6b", "qwen3:8b");
+        assertFalse(warmer.isReady());
+
+        warmer.warmUp().join();
+
+        assertTrue(warmer.isReady());
+        assertEquals(2, requests.size());
+        for (JsonNode request : requests) {
+            assertEquals("system", request.path("messages").path(0).path("role").asText());
+            assertEquals("30m", request.path("keep_alive").asText());
+            assertEquals(1, request.path("options").path("num_predict").asInt());
+        }
+    }
+
+    @Test
+    public void failedWarmUpIsRetriedByRefresh() throws Exception {
+        ModelWarmer warmer = start("qwen3:0.6b");
+        status = 500;
+        warmer.warmUp().join();
+        assertFalse(warmer.isReady());
+
+        status = 200;
+        warmer.refresh();
+        waitFor(warmer::isReady);
+
+        MetricsWriter out = new MetricsWriter();
+        warmer.writeMetrics(out);
+        assertTrue(out.toString().contains("mathbot_model_ready 1\n"));
+        assertTrue(out.toString().contains("mathbot_model_warmup_failures_total 1\n"));
+    }
+
+    @Test
+    public void refreshRenewsOnlyIdleModels() throws Exception {
+        ModelWarmer warmer = start("qwen3:0.6b");
+        warmer.warmUp().join();
+        requests.clear();
+
+        // Nunca usado: recebe a requisição vazia que só renova o keep_alive
+        warmer.refresh();
+        waitFor(() -> requests.size() == 1);
+        assertEquals(0, requests.get(0).path("messages").size());
+
+        // Acabou de responder uma pergunta: nada a renovar
+        client.chatAsync(List.of(), "oi").join();
+        requests.clear();
+        warmer.refresh();
+        Thread.sleep(200);
+        assertTrue(requests.isEmpty());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,105 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class OllamaBackendPoolTest {
+
+    @Test
+    public void picksBackendWithFewestOutstandingRequests() {
+        OllamaBackendPool pool = new OllamaBackendPool(
+                List.of("http://a:11434/", "http://b:11434", "http://c:11434"), HttpClient.newHttpClient());
+        OllamaBackendPool.Backend a = pool.getBackends().get(0);
+        OllamaBackendPool.Backend b = pool.getBackends().get(1);
+        OllamaBackendPool.Backend c = pool.getBackends().get(2);
+        assertEquals("http://a:11434", a.getBaseUrl());
+
+        a.acquire();
+        a.acquire();
+        c.acquire();
+        for (int i = 0; i < 5; i++) {
+            assertSame(b, pool.select(List.of()));
+        }
+
+        // Já tentado nesta requisição ou fora da rotação: fica de fora
+        assertSame(c, pool.select(List.of(b)));
+        pool.markFailed(c, new IOException("down"));
+        assertFalse(c.isHealthy());
+        assertSame(a, pool.select(List.of(b)));
+
+        // Nenhum saudável sobrando: tenta mesmo assim um que ainda não foi tentado
+        pool.markFailed(a, new IOException("down"));
+        assertSame(c, pool.select(List.of(b)));
+        assertNull(pool.select(List.of(a, b, c)));
+    }
+
+    @Test
+    public void failsOverToNextBackendOnConnectError() throws Exception {
+        AtomicInteger served = new AtomicInteger();
+        HttpServer live = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        live.createContext("/api/chat", exchange -> answer(exchange, served));
+        live.start();
+        int deadPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+
+        Config.OllamaConfig config = new Config.OllamaConfig();
+        config.setBackends(new ArrayList<>(List.of(
+                "http://127.0.0.1:" + deadPort,
+                "http://127.0.0.1:" + live.getAddress().getPort())));
+        config.setModel("qwen3:0.6b");
+        config.setHealthCheckIntervalSeconds(0);
+        OllamaClient client = new OllamaClient(config);
+        OllamaBackendPool.Backend dead = client.getPool().getBackends().get(0);
+        OllamaBackendPool.Backend alive = client.getPool().getBackends().get(1);
+        try {
+            // Ocupado, o backend vivo perde para o morto na escolha: a primeira tentativa cai
+            alive.acquire();
+            String answer = client.chatAsync(List.of(), "2+2?").get(10, TimeUnit.SECONDS);
+            alive.release();
+
+            assertEquals("4", answer);
+            assertEquals(1, served.get());
+            assertFalse(dead.isHealthy());
+            assertTrue(alive.isHealthy());
+            assertEquals(0, dead.getOutstanding());
+            assertEquals(0, alive.getOutstanding());
+        } finally {
+            client.shutdown();
+            live.stop(0);
+        }
+    }
+
+    private static void answer(HttpExchange exchange, AtomicInteger served) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            served.incrementAndGet();
+            byte[] body = "{\"message\":{\"role\":\"assistant\",\"content\":\"4\"},\"done\":true}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
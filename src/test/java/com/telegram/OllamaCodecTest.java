@@ -0,0 +1,115 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class OllamaCodecTest {
+
+    private final OllamaCodec codec = new OllamaCodec("Você é um \"tutor\".\nSem LaTeX");
+
+    @Test
+    public void writesChatRequest() throws Exception {
+        List<ChatMessage> history = List.of(
+                new ChatMessage(ChatMessage.Role.USER, "quanto é 2+2?"),
+                new ChatMessage(ChatMessage.Role.ASSISTANT, "4 ✓"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.writeChat(out, "qwen3:0.6b", history, "e 3×3?", true);
+
+        JsonNode body = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals("qwen3:0.6b", body.get("model").asText());
+        assertTrue(body.get("stream").asBoolean());
+        JsonNode messages = body.get("messages");
+        assertEquals(4, messages.size());
+        assertEquals("system", messages.get(0).get("role").asText());
+        assertEquals("Você é um \"tutor\".\nSem LaTeX", messages.get(0).get("content").asText());
+        assertEquals("4 ✓", messages.get(2).get("content").asText());
+        assertEquals("user", messages.get(3).get("role").asText());
+        assertEquals("e 3×3?", messages.get(3).get("content").asText());
+    }
+
+    @Test
+    public void writesKeepAlive() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new OllamaCodec("tutor", "30m").writeChat(out, "m", List.of(), "oi", false);
+        assertEquals("30m", mapper.readTree(out.toByteArray()).get("keep_alive").asText());
+
+        out.reset();
+        new OllamaCodec("tutor", "-1").writeChat(out, "m", List.of(), "oi", false);
+        assertTrue(mapper.readTree(out.toByteArray()).get("keep_alive").isNumber());
+
+        out.reset();
+        codec.writeChat(out, "m", List.of(), "oi", false);
+        assertTrue(mapper.readTree(out.toByteArray()).get("keep_alive") == null);
+    }
+
+    @Test
+    public void decodesStreamSplitAnywhere() {
+        String body = "{\"message\":{\"role\":\"assistant\",\"content\":\"A derivada \"},\"done\":false}\n"
+                + "{\"message\":{\"role\":\"assistant\",\"content\":\"é 2x ✓\",\"tool_calls\":[{\"content\":\"x\"}]},\"done\":false}\n"
+                + "{\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,\"prompt_eval_count\":26,"
+                + "\"prompt_eval_duration\":130000000,\"eval_count\":8,\"eval_duration\":400000000}\n";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        // Corta o corpo em pedaços de 7 bytes, inclusive no meio de caracteres UTF-8
+        List<String> partials = new ArrayList<>();
+        OllamaCodec.ChatDecoder decoder = codec.newDecoder(partials::add);
+        for (int i = 0; i < bytes.length; i += 7) {
+            decoder.onNext(List.of(ByteBuffer.wrap(bytes, i, Math.min(7, bytes.length - i))));
+        }
+        decoder.onComplete();
+
+        OllamaCodec.ChatResult result = decoder.result().join();
+        assertEquals("A derivada é 2x ✓", result.getContent());
+        assertEquals(List.of("A derivada ", "é 2x ✓"), partials);
+        assertEquals(26, result.getPromptEvalCount());
+        assertEquals(8, result.getEvalCount());
+        assertEquals(20.0, result.getEvalTokensPerSecond(), 1e-9);
+    }
+
+    @Test
+    public void failsWhenStreamEndsWithoutDone() {
+        List<String> partials = new ArrayList<>();
+        OllamaCodec.ChatDecoder decoder = codec.newDecoder(partials::add);
+        decoder.onNext(List.of(ByteBuffer.wrap(("{\"message\":{\"role\":\"assistant\",\"content\":\"A resposta é\"},"
+                + "\"done\":false}\n").getBytes(StandardCharsets.UTF_8))));
+        decoder.onComplete();
+
+        // A resposta cortada não pode virar sucesso (iria para o cache e para o histórico)
+        assertEquals(1, partials.size());
+        try {
+            decoder.result().join();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof OllamaException);
+            return;
+        }
+        throw new AssertionError("expected failure");
+    }
+
+    @Test
+    public void reportsOllamaError() {
+        OllamaCodec.ChatDecoder decoder = codec.newDecoder(null);
+        decoder.onNext(List.of(ByteBuffer.wrap("{\"error\":\"model 'x' not found\"}".getBytes(StandardCharsets.UTF_8))));
+        decoder.onComplete();
+
+        try {
+            decoder.result().join();
+        } catch (CompletionException e) {
+            assertEquals("Erro do Ollama: model 'x' not found", e.getCause().getMessage());
+            return;
+        }
+        throw new AssertionError("expected failure");
+    }
+}
@@ -0,0 +1,152 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestLimiterTest {
+
+    @Test
+    public void queuesBeyondLimitAndRejectsWhenFull() {
+        RequestLimiter limiter = new RequestLimiter(1, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        CompletableFuture<String> running = limiter.submit(() -> first);
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("segunda"));
+        CompletableFuture<String> rejected = limiter.submit(() -> CompletableFuture.completedFuture("terceira"));
+
+        assertEquals(1, limiter.getRunning());
+        assertEquals(1, limiter.getQueued());
+        assertTrue(rejected.isCompletedExceptionally());
+
+        first.complete("primeira");
+        assertEquals("primeira", running.join());
+        assertEquals("segunda", queued.join());
+        assertEquals(0, limiter.getRunning());
+    }
+
+    @Test
+    public void cancellingRunningCallFreesSlotImmediately() throws Exception {
+        RequestLimiter limiter = new RequestLimiter(1, 4);
+        CompletableFuture<String> inner = new CompletableFuture<>();
+
+        CompletableFuture<String> running = limiter.submit(() -> inner);
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("próxima"));
+        assertFalse(queued.isDone());
+
+        running.cancel(true);
+
+        // A chamada em andamento é cancelada e a da fila assume a vaga
+        assertTrue(inner.isCancelled());
+        assertEquals("próxima", queued.get(1, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getRunning());
+    }
+
+    @Test
+    public void cancellingQueuedCallNeverStartsIt() {
+        RequestLimiter limiter = new RequestLimiter(1, 4);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        boolean[] started = new boolean[1];
+
+        limiter.submit(() -> first);
+        CompletableFuture<String> queued = limiter.submit(() -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("nunca");
+        });
+        queued.cancel(true);
+        first.complete("ok");
+
+        assertFalse(started[0]);
+        assertEquals(0, limiter.getRunning());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void cancellingQueuedCallFreesItsQueuePosition() {
+        RequestLimiter limiter = new RequestLimiter(1, 1);
+        RequestLimiter.Flow flow = new RequestLimiter.Flow(1L, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(flow, () -> first);
+        limiter.submit(flow, () -> CompletableFuture.completedFuture("cancelada")).cancel(true);
+        assertEquals(0, limiter.getQueued());
+
+        // A posição liberada aceita outra requisição em vez de recusar com fila cheia
+        CompletableFuture<String> next = limiter.submit(flow, () -> CompletableFuture.completedFuture("próxima"));
+        assertFalse(next.isCompletedExceptionally());
+        assertEquals(1, limiter.getQueued());
+
+        first.complete("ok");
+        assertEquals("próxima", next.join());
+        assertEquals(0, limiter.getRunning());
+    }
+
+    @Test
+    public void cancelledQueuedCallDoesNotCostItsFlowATurn() {
+        RequestLimiter limiter = new RequestLimiter(1, 16);
+        RequestLimiter.Flow a = new RequestLimiter.Flow("a", 1);
+        RequestLimiter.Flow b = new RequestLimiter.Flow("b", 1);
+        List<String> order = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(() -> first);
+        limiter.submit(a, () -> record(order, "cancelada")).cancel(true);
+        limiter.submit(b, () -> record(order, "b1"));
+        limiter.submit(b, () -> record(order, "b2"));
+        limiter.submit(a, () -> record(order, "a1"));
+        first.complete("ok");
+
+        // Sem devolver a etiqueta, a1 ficaria atrás de b2
+        assertEquals(List.of("b1", "a1", "b2"), order);
+    }
+
+    @Test
+    public void lightFlowIsServedBeforeHeavyFlowBacklog() {
+        RequestLimiter limiter = new RequestLimiter(1, 16);
+        RequestLimiter.Flow heavy = new RequestLimiter.Flow(1L, 1);
+        RequestLimiter.Flow light = new RequestLimiter.Flow(2L, 1);
+        List<String> order = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(heavy, () -> first);
+        for (int i = 1; i <= 3; i++) {
+            String name = "A" + i;
+            limiter.submit(heavy, () -> record(order, name));
+        }
+        limiter.submit(light, () -> record(order, "B"));
+        first.complete("A0");
+
+        // B chegou por último, mas A já estava sendo atendido: B passa na frente da fila de A
+        assertEquals(List.of("B", "A1", "A2", "A3"), order);
+    }
+
+    @Test
+    public void heavierWeightGetsMoreTurns() {
+        RequestLimiter limiter = new RequestLimiter(1, 16);
+        RequestLimiter.Flow gold = new RequestLimiter.Flow("gold", 2);
+        RequestLimiter.Flow plain = new RequestLimiter.Flow("plain", 1);
+        List<String> order = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(() -> first);
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(plain, () -> record(order, "p"));
+            limiter.submit(gold, () -> record(order, "g"));
+        }
+        first.complete("ok");
+
+        assertEquals(List.of("p", "g", "g", "p", "g", "g", "p", "p"), order);
+    }
+
+    private static CompletableFuture<String> record(List<String> order, String name) {
+        order.add(name);
+        return CompletableFuture.completedFuture(name);
+    }
+}
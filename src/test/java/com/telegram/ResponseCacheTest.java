@@ -0,0 +1,81 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyIsSha256OfNormalizedQuestionAndContext() {
+        List<ChatMessage> history = List.of(new ChatMessage(ChatMessage.Role.USER, "oi"));
+        String key = ResponseCache.key("qwen3:0.6b", "tutor", history, "Qual é a derivada de x^2?");
+
+        assertTrue(key.matches("[0-9a-f]{64}"));
+        // Maiúsculas, acentos, espaços e pontuação final não mudam a pergunta
+        assertEquals(key, ResponseCache.key("qwen3:0.6b", "tutor", history, "  qual e a   derivada de x^2"));
+        assertNotEquals(key, ResponseCache.key("qwen3:8b", "tutor", history, "Qual é a derivada de x^2?"));
+        assertNotEquals(key, ResponseCache.key("qwen3:0.6b", "tutor", List.of(), "Qual é a derivada de x^2?"));
+        // O separador impede que campos vizinhos se misturem
+        assertNotEquals(ResponseCache.key("ab", "c", List.of(), "q"), ResponseCache.key("a", "bc", List.of(), "q"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ResponseCache cache = new ResponseCache(2, 0, null);
+        cache.put("a", "resposta a");
+        cache.put("b", "resposta b");
+        cache.get("a");
+        cache.put("c", "resposta c");
+
+        assertEquals(2, cache.size());
+        assertEquals("resposta a", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("resposta c", cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        ResponseCache cache = new ResponseCache(10, 50, null);
+        cache.put("a", "resposta a");
+        assertEquals("resposta a", cache.get("a"));
+
+        Thread.sleep(100);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void snapshotRoundTripKeepsLruOrder() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("cache/response-cache.json");
+        ResponseCache cache = new ResponseCache(2, 0, path);
+        cache.put("a", "resposta a ✓");
+        cache.put("b", "resposta b");
+        cache.get("a");
+        cache.close();
+
+        ResponseCache restored = new ResponseCache(2, 0, path);
+        restored.loadSnapshot();
+        assertEquals(2, restored.size());
+
+        // "a" foi usada depois de "b" antes de salvar: com o cache cheio, "b" sai primeiro
+        restored.put("c", "resposta c");
+        assertNull(restored.get("b"));
+        assertEquals("resposta a ✓", restored.get("a"));
+        assertEquals("resposta c", restored.get("c"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class SemanticCacheTest {
+
+    private static final int DIMENSIONS = 64;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private HttpServer ollama;
+    private OllamaClient client;
+    private SemanticCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/embed", this::embed);
+        ollama.start();
+        Config.OllamaConfig ollamaConfig = new Config.OllamaConfig();
+        ollamaConfig.setBaseUrl("http://127.0.0.1:" + ollama.getAddress().getPort());
+        ollamaConfig.setModel("qwen3:0.6b");
+        ollamaConfig.setHealthCheckIntervalSeconds(0);
+        client = new OllamaClient(ollamaConfig);
+
+        Config.SemanticCacheConfig config = new Config.SemanticCacheConfig();
+        config.setEnabled(true);
+        config.setMaxEntries(4);
+        cache = new SemanticCache(client, config);
+    }
+
+    /**
+     * Embedder falso: um "saco de palavras" que ignora números e letras soltas,
+     * como um embedding de verdade quase ignora. Responde 500 para "falha".
+     */
+    private void embed(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String input = mapper.readTree(exchange.getRequestBody()).path("input").asText();
+            if (input.contains("falha")) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            double[] vector = new double[DIMENSIONS];
+            for (String word : input.toLowerCase().split("[^a-z]+")) {
+                if (word.length() > 1) {
+                    vector[Math.floorMod(word.hashCode(), DIMENSIONS)] += 1;
+                }
+            }
+            byte[] body = mapper.writeValueAsBytes(Map.of("embeddings", new double[][] {vector}));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        ollama.stop(0);
+    }
+
+    private SemanticCache.Lookup lookup(String question) throws Exception {
+        return cache.lookup(question).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void hitsOnParaphraseWithSameNumbers() throws Exception {
+        cache.store(lookup("Qual a derivada de 3x^4 + 2x?"), "12x^3 + 2");
+
+        SemanticCache.Lookup result = lookup("qual   a derivada de 3x^4 + 2x");
+        assertTrue(result.isHit());
+        assertEquals("12x^3 + 2", result.getAnswer());
+    }
+
+    @Test
+    public void missesWhenNumbersOrVariablesDiffer() throws Exception {
+        cache.store(lookup("derivada de 3x^4 + 2x"), "12x^3 + 2");
+
+        // Mesmo embedding, outra conta: a resposta guardada estaria errada
+        SemanticCache.Lookup other = lookup("derivada de 5x^4 + 7x");
+        assertEquals(1.0, other.getSimilarity(), 1e-4);
+        assertFalse(other.isHit());
+        assertFalse(lookup("derivada de 3y^4 + 2y").isHit());
+        assertFalse(lookup("derivada de 3x^4 - 2x").isHit());
+        assertEquals(3, cache.getMismatches());
+
+        // Guardada, a outra conta passa a ter a própria resposta
+        cache.store(other, "20x^3 + 7");
+        assertEquals("20x^3 + 7", lookup("derivada de 5x^4 + 7x").getAnswer());
+        assertEquals("12x^3 + 2", lookup("derivada de 3x^4 + 2x").getAnswer());
+    }
+
+    @Test
+    public void extractsNumbersVariablesAndOperators() {
+        assertEquals("3 x ^ 4 + 2 x", SemanticCache.mathTokens("qual e a derivada de 3x^4 + 2x"));
+        assertEquals("x ² = 2,5", SemanticCache.mathTokens("resolva x² = 2,5"));
+        assertEquals("", SemanticCache.mathTokens("o que e uma derivada"));
+    }
+
+    @Test
+    public void keepsNewestHalfWhenFull() throws Exception {
+        String[] questions = {"alfa", "bravo", "charlie", "delta", "echo"};
+        for (String question : questions) {
+            cache.store(lookup(question), "resposta " + question);
+        }
+
+        // Cheio com 4: ficam "charlie" e "delta", e "echo" entra depois
+        assertEquals(3, cache.size());
+        assertFalse(lookup("alfa").isHit());
+        assertFalse(lookup("bravo").isHit());
+        assertEquals("resposta charlie", lookup("charlie").getAnswer());
+        assertEquals("resposta echo", lookup("echo").getAnswer());
+    }
+
+    @Test
+    public void embeddingFailureIsAMiss() throws Exception {
+        SemanticCache.Lookup result = lookup("falha no embedding");
+
+        assertFalse(result.isHit());
+        cache.store(result, "resposta");
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getLookups());
+        assertEquals(0, cache.getEmbedLatency().getCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+public class StreamingReplyTest {
+
+    private final FakeBot bot = new FakeBot();
+    private final TelegramSender sender = new TelegramSender(bot, new Config.TelegramConfig());
+
+    @After
+    public void tearDown() {
+        sender.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void editsAtMostOncePerInterval() throws Exception {
+        StreamingReply reply = new StreamingReply(sender, 1L, 300);
+        reply.accept("A derivada");
+        awaitCalls(1);
+
+        // Dentro do intervalo os pedaços só se acumulam
+        reply.accept(" de x^2");
+        reply.accept(" é");
+        Thread.sleep(100);
+        assertEquals(List.of("send:A derivada"), bot.calls());
+
+        Thread.sleep(300);
+        reply.accept(" 2x");
+        awaitCalls(2);
+        reply.accept(".");
+        Thread.sleep(100);
+
+        assertEquals(List.of("send:A derivada", "edit:A derivada de x^2 é 2x"), bot.calls());
+    }
+
+    @Test
+    public void splitsFinalTextOverTelegramLimit() throws Exception {
+        StreamingReply reply = new StreamingReply(sender, 1L, 0);
+        reply.accept("x");
+        awaitCalls(1);
+
+        String line = "x".repeat(3000);
+        assertTrue(reply.finish(line + "\n" + line + "\n" + line).get(5, TimeUnit.SECONDS));
+        awaitCalls(4);
+
+        // O começo fica na mensagem do streaming, o resto vai em mensagens novas
+        assertEquals(List.of("send:x", "edit:" + line, "send:" + line, "send:" + line), bot.calls());
+        for (String call : bot.calls()) {
+            assertTrue(call.length() <= "send:".length() + StreamingReply.MAX_MESSAGE_LENGTH);
+        }
+    }
+
+    @Test
+    public void reportsNothingDeliveredWhenNothingWasStreamed() throws Exception {
+        StreamingReply reply = new StreamingReply(sender, 1L, 0);
+        reply.accept("  ");
+
+        assertFalse(reply.finish("resposta").get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(), bot.calls());
+    }
+
+    @Test
+    public void abortMarksPartialTextAsInterrupted() throws Exception {
+        StreamingReply reply = new StreamingReply(sender, 1L, 0);
+        reply.accept("A derivada de x^2 ");
+        reply.abort().get(5, TimeUnit.SECONDS);
+        // Pedaço que chegou depois do cancelamento
+        reply.accept("é 2x");
+        Thread.sleep(100);
+
+        assertEquals(List.of("send:A derivada de x^2 ", "edit:A derivada de x^2" + StreamingReply.INTERRUPTED),
+                bot.calls());
+    }
+
+    @Test
+    public void abortWithoutStreamedTextSendsNothing() throws Exception {
+        StreamingReply reply = new StreamingReply(sender, 1L, 0);
+        reply.abort().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(), bot.calls());
+    }
+
+    private void awaitCalls(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && bot.calls().size() < count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, bot.calls().size());
+    }
+
+    /**
+     * Registra os envios e edições, na ordem em que chegam ao "Telegram".
+     */
+    private static final class FakeBot extends DefaultAbsSender {
+        private final List<String> calls = new ArrayList<>();
+
+        FakeBot() {
+            super(new DefaultBotOptions(), "test-token");
+        }
+
+        synchronized List<String> calls() {
+            return List.copyOf(calls);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method)
+                throws TelegramApiException {
+            Message message = new Message();
+            message.setMessageId(42);
+            if (method instanceof EditMessageText edit) {
+                calls.add("edit:" + edit.getText());
+                message.setText(edit.getText());
+            } else {
+                String text = ((SendMessage) method).getText();
+                calls.add("send:" + text);
+                message.setText(text);
+            }
+            return (T) message;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Cancelamento de ponta a ponta: o bot fala com um Telegram e um Ollama falsos.
+ */
+public class TelegramBotTest {
+
+    private static final String TOKEN = "test-token";
+    private static final long CHAT = 42L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> telegramCalls = new ArrayList<>();
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final CountDownLatch generationStarted = new CountDownLatch(1);
+    private final CountDownLatch generationAborted = new CountDownLatch(1);
+    private HttpServer telegram;
+    private HttpServer ollama;
+    private OllamaClient client;
+    private TelegramBot bot;
+
+    @Before
+    public void setUp() throws IOException {
+        telegram = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        telegram.createContext("/bot" + TOKEN + "/", this::telegram);
+        telegram.setExecutor(executor);
+        telegram.start();
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/chat", this::chat);
+        ollama.setExecutor(executor);
+        ollama.start();
+
+        Config config = new Config();
+        config.setTelegramToken(TOKEN);
+        config.setBotUsername("mathbot_test");
+        Config.TelegramConfig telegramConfig = new Config.TelegramConfig();
+        telegramConfig.setApiUrl("http://127.0.0.1:" + telegram.getAddress().getPort());
+        telegramConfig.setPerChatMessagesPerSecond(100);
+        telegramConfig.setPerChatBurst(100);
+        config.setTelegram(telegramConfig);
+        Config.StreamingConfig streaming = new Config.StreamingConfig();
+        streaming.setEditIntervalMs(0);
+        config.setStreaming(streaming);
+        Config.OllamaConfig ollamaConfig = new Config.OllamaConfig();
+        ollamaConfig.setBaseUrl("http://127.0.0.1:" + ollama.getAddress().getPort());
+        ollamaConfig.setModel("qwen3:0.6b");
+        ollamaConfig.setMaxConcurrentRequests(1);
+        ollamaConfig.setHealthCheckIntervalSeconds(0);
+        config.setOllama(ollamaConfig);
+
+        client = new OllamaClient(ollamaConfig);
+        bot = new TelegramBot(config, client);
+    }
+
+    @After
+    public void tearDown() {
+        bot.shutdown();
+        client.shutdown();
+        ollama.stop(0);
+        telegram.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pergunta com "devagar" manda um pedaço e segura a conexão até o cliente
+     * fechar; as outras são respondidas na hora.
+     */
+    private void chat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode messages = mapper.readTree(exchange.getRequestBody()).path("messages");
+            String question = messages.path(messages.size() - 1).path("content").asText();
+            if (!question.contains("devagar")) {
+                byte[] body = "{\"message\":{\"role\":\"assistant\",\"content\":\"Resposta rápida\"},\"done\":true}\n"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(chunk("A derivada "));
+                out.flush();
+                generationStarted.countDown();
+                for (int i = 0; i < 200; i++) {
+                    Thread.sleep(50);
+                    out.write(chunk(""));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // O bot fechou a conexão: o Ollama pararia de gerar aqui
+                generationAborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static byte[] chunk(String content) {
+        return ("{\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},\"done\":false}\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void telegram(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestURI().getPath().substring(("/bot" + TOKEN + "/").length())
+                    .toLowerCase();
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            ObjectNode response = mapper.createObjectNode().put("ok", true);
+            if (method.equals("sendmessage") || method.equals("editmessagetext")) {
+                String text = request.path("text").asText();
+                synchronized (telegramCalls) {
+                    telegramCalls.add((method.equals("sendmessage") ? "send:" : "edit:") + text);
+                }
+                int messageId = method.equals("sendmessage") ? nextMessageId.incrementAndGet()
+                        : request.path("message_id").asInt();
+                ObjectNode message = response.putObject("result");
+                message.put("message_id", messageId).put("date", 0).put("text", text);
+                message.putObject("chat").put("id", CHAT).put("type", "private");
+            } else {
+                response.put("result", true);
+            }
+            byte[] body = mapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void receive(String text) throws IOException {
+        ObjectNode update = mapper.createObjectNode().put("update_id", nextMessageId.incrementAndGet());
+        ObjectNode message = update.putObject("message");
+        message.put("message_id", 1).put("date", 0).put("text", text);
+        message.putObject("chat").put("id", CHAT).put("type", "private");
+        bot.onUpdateReceived(mapper.treeToValue(update, Update.class));
+    }
+
+    private void awaitTelegramCall(String call) throws InterruptedException {
+        for (int i = 0; i < 250 && !calls().contains(call); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue("Telegram não recebeu " + call + ": " + calls(), calls().contains(call));
+    }
+
+    private List<String> calls() {
+        synchronized (telegramCalls) {
+            return List.copyOf(telegramCalls);
+        }
+    }
+
+    private void startSlowGeneration() throws Exception {
+        receive("qual a derivada de x^2? devagar");
+        assertTrue(generationStarted.await(5, TimeUnit.SECONDS));
+        awaitTelegramCall("send:A derivada ");
+        assertEquals(1, client.getLimiter().getRunning());
+    }
+
+    private void assertGenerationCancelled() throws Exception {
+        assertTrue("a conexão com o Ollama não foi fechada", generationAborted.await(5, TimeUnit.SECONDS));
+        awaitTelegramCall("edit:A derivada" + StreamingReply.INTERRUPTED);
+        for (int i = 0; i < 100 && client.getLimiter().getRunning() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, client.getLimiter().getRunning());
+    }
+
+    @Test
+    public void newMessageCancelsRunningGeneration() throws Exception {
+        startSlowGeneration();
+
+        receive("deixa, e de x^3?");
+
+        assertGenerationCancelled();
+        awaitTelegramCall("edit:Resposta rápida");
+    }
+
+    @Test
+    public void clearCancelsRunningGeneration() throws Exception {
+        startSlowGeneration();
+
+        receive("/clear");
+
+        assertGenerationCancelled();
+        awaitTelegramCall("send:🧹 Histórico limpo!");
+    }
+}
@@ -0,0 +1,91 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TelegramSenderTest {
+
+    @Test
+    public void splitsLongTextOnLineBreaks() {
+        String line = "x".repeat(3000);
+        List<String> chunks = TelegramSender.split(line + "\n" + line + "\n" + line, 4096);
+
+        assertEquals(3, chunks.size());
+        for (String chunk : chunks) {
+            assertEquals(line, chunk);
+        }
+        assertEquals(List.of("curto"), TelegramSender.split("curto", 4096));
+    }
+
+    @Test
+    public void retriesAfterFloodWaitAndKeepsOrder() throws Exception {
+        FakeBot bot = new FakeBot(1);
+        TelegramSender sender = new TelegramSender(bot, new Config.TelegramConfig());
+
+        sender.sendText(1L, "primeira", false);
+        Message last = sender.sendText(1L, "segunda", false).get(5, TimeUnit.SECONDS);
+
+        assertEquals("segunda", last.getText());
+        assertEquals(List.of("primeira", "segunda"), bot.delivered);
+        assertEquals(1, sender.getRetries());
+        assertEquals(3, bot.attempts.get());
+        sender.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Responde 429 (retry_after = 1s) às primeiras {@code floods} chamadas.
+     */
+    private static final class FakeBot extends DefaultAbsSender {
+        final List<String> delivered = new ArrayList<>();
+        final AtomicInteger attempts = new AtomicInteger();
+        private final int floods;
+
+        FakeBot(int floods) {
+            super(new DefaultBotOptions(), "test-token");
+            this.floods = floods;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+            if (attempts.incrementAndGet() <= floods) {
+                throw floodWait();
+            }
+            String text = ((SendMessage) method).getText();
+            synchronized (delivered) {
+                delivered.add(text);
+            }
+            Message message = new Message();
+            message.setText(text);
+            return (T) message;
+        }
+
+        private static TelegramApiRequestException floodWait() {
+            try {
+                ApiResponse<?> response = new ObjectMapper().readValue(
+                        "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\","
+                                + "\"parameters\":{\"retry_after\":1}}", ApiResponse.class);
+                return new TelegramApiRequestException("Too Many Requests", response);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
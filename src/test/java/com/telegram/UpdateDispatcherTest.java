@@ -0,0 +1,117 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class UpdateDispatcherTest {
+
+    @Test
+    public void keepsOrderWithinChat() throws Exception {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(4, 1000);
+        int perChat = 200;
+        long[] chats = {1L, 2L, -1001234L};
+        List<List<Integer>> seen = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(perChat * chats.length);
+
+        for (int c = 0; c < chats.length; c++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        for (int i = 0; i < perChat; i++) {
+            for (int c = 0; c < chats.length; c++) {
+                final int n = i;
+                final List<Integer> target = seen.get(c);
+                dispatcher.dispatch(chats[c], () -> {
+                    target.add(n);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> list : seen) {
+            assertEquals(perChat, list.size());
+            for (int i = 0; i < perChat; i++) {
+                assertEquals(Integer.valueOf(i), list.get(i));
+            }
+        }
+        dispatcher.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void slowChatDoesNotBlockOthers() throws Exception {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(2, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(2L, fastDone::countDown);
+
+        assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        dispatcher.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void pendingGenerationDoesNotHoldOtherChats() throws Exception {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(2, 10);
+        CompletableFuture<Void> generation = new CompletableFuture<>();
+        CountDownLatch answered = new CountDownLatch(1);
+
+        // 1 e 10 caíam na mesma stripe quando eram 64: a geração do chat 1 segurava o 10
+        dispatcher.dispatchAsync(1L, () -> generation);
+        dispatcher.dispatchAsync(10L, () -> {
+            answered.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+        // A fila do chat 10 sai do mapa quando esvazia; a do 1 espera a geração
+        for (int i = 0; i < 100 && dispatcher.getActiveChats() > 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dispatcher.getActiveChats());
+
+        generation.complete(null);
+        for (int i = 0; i < 100 && dispatcher.getActiveChats() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.getActiveChats());
+        dispatcher.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void tryDispatchRejectsInsteadOfBlockingWhenFull() throws Exception {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(1, 1);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+
+        assertTrue(dispatcher.tryDispatchAsync(1L, () -> first));
+        assertFalse(dispatcher.tryDispatchAsync(2L, () -> CompletableFuture.completedFuture(null)));
+
+        first.complete(null);
+        CountDownLatch ran = new CountDownLatch(1);
+        for (int i = 0; i < 100 && !dispatcher.tryDispatchAsync(2L, () -> {
+            ran.countDown();
+            return CompletableFuture.completedFuture(null);
+        }); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,98 @@
+package com.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+public class WebhookServerTest {
+
+    private static final String UPDATE = "{\"update_id\":7,\"message\":{\"message_id\":1,\"date\":0,"
+            + "\"chat\":{\"id\":42,\"type\":\"private\"},\"text\":\"quanto é 2+2?\"}}";
+
+    private final List<Update> updates = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private WebhookServer server;
+
+    @Before
+    public void setUp() {
+        Config.WebhookConfig config = new Config.WebhookConfig();
+        config.setHost("127.0.0.1");
+        config.setPort(0);
+        config.setSecretToken("segredo-123");
+        server = new WebhookServer(config, updates::add);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void deliversUpdateWithValidSecret() throws Exception {
+        assertEquals(200, post("segredo-123", UPDATE));
+
+        assertEquals(1, updates.size());
+        assertEquals(Long.valueOf(42), updates.get(0).getMessage().getChatId());
+        assertEquals("quanto é 2+2?", updates.get(0).getMessage().getText());
+        assertEquals(1, server.getReceived());
+    }
+
+    @Test
+    public void rejectsWrongSecretAndInvalidBody() throws Exception {
+        assertEquals(401, post(null, UPDATE));
+        assertEquals(401, post("outro", UPDATE));
+        assertEquals(400, post("segredo-123", "{não é json"));
+
+        assertEquals(0, updates.size());
+        assertEquals(3, server.getRejected());
+    }
+
+    @Test
+    public void rejectsWithoutReadingLargeUnauthenticatedBody() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            // Declara 100 MB e manda só o começo: a recusa não pode esperar o resto
+            out.write(("POST /telegram/webhook HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Length: " + 100 * 1024 * 1024 + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[1024]);
+            out.flush();
+
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 401 Unauthorized", in.readLine());
+            boolean closing = false;
+            for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+                closing |= line.equalsIgnoreCase("Connection: close");
+            }
+            assertTrue(closing);
+        }
+        assertEquals(1, server.getRejected());
+    }
+
+    private int post(String secret, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + server.getPort() + "/telegram/webhook"))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header(WebhookServer.SECRET_HEADER, secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}